@@ -18,6 +18,7 @@ package com.google.zxing;
 
 import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.BitPool;
 
 /**
  * This class hierarchy provides a set of methods to convert luminance data to 1 bit data.
@@ -30,6 +31,7 @@ import com.google.zxing.common.BitMatrix;
 public abstract class Binarizer {
 
   private final LuminanceSource source;
+  private BitPool bitPool;
 
   protected Binarizer(LuminanceSource source) {
     this.source = source;
@@ -39,6 +41,41 @@ public abstract class Binarizer {
     return source;
   }
 
+  public final BitPool getBitPool() {
+    return bitPool;
+  }
+
+  /**
+   * @param bitPool pool to take black matrices from, and to give them back to in
+   *  {@link #releaseBlackMatrix(BitMatrix)}; or null to simply allocate them
+   */
+  public final void setBitPool(BitPool bitPool) {
+    this.bitPool = bitPool;
+  }
+
+  /**
+   * Allocates the matrix for {@link #getBlackMatrix()}, from the pool if there is one.
+   *
+   * @param width width of the matrix
+   * @param height height of the matrix
+   * @return a clear matrix
+   */
+  protected final BitMatrix acquireBitMatrix(int width, int height) {
+    return bitPool == null ? new BitMatrix(width, height) : bitPool.acquireMatrix(width, height);
+  }
+
+  /**
+   * Gives back a matrix returned by {@link #getBlackMatrix()}, once the caller is completely done
+   * with it, so that the next image of the same size can reuse it. Does nothing if there is no pool.
+   *
+   * @param matrix the black matrix, which must not be used afterwards
+   */
+  public void releaseBlackMatrix(BitMatrix matrix) {
+    if (bitPool != null) {
+      bitPool.releaseMatrix(matrix);
+    }
+  }
+
   /**
    * Converts one row of luminance data to 1 bit data. May actually do the conversion, or return
    * cached data. Callers should assume this method is expensive and call it as seldom as possible.
@@ -18,6 +18,7 @@ package com.google.zxing;
 
 import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.BitPool;
 
 /**
  * This class is the core bitmap class used by ZXing to represent 1 bit data. Reader objects
@@ -51,6 +52,14 @@ public final class BinaryBitmap {
     return binarizer.getHeight();
   }
 
+  /**
+   * @return The luminance data this bitmap is binarized from, for readers that look at gray
+   *         levels once they know where a barcode is.
+   */
+  public LuminanceSource getLuminanceSource() {
+    return binarizer.getLuminanceSource();
+  }
+
   /**
    * Converts one row of luminance data to 1 bit data. May actually do the conversion, or return
    * cached data. Callers should assume this method is expensive and call it as seldom as possible.
@@ -87,6 +96,18 @@ public final class BinaryBitmap {
     return matrix;
   }
 
+  /**
+   * Gives the black matrix, if one was made, back to the binarizer's {@link BitPool} for reuse.
+   * The matrix, and anything sampled from it, must no longer be in use; a later call to
+   * {@link #getBlackMatrix()} binarizes the image again.
+   */
+  public void release() {
+    if (matrix != null) {
+      binarizer.releaseBlackMatrix(matrix);
+      matrix = null;
+    }
+  }
+
   /**
    * @return Whether this bitmap can be cropped.
    */
@@ -98,6 +119,10 @@ public final class BinaryBitmap {
    * Returns a new object with cropped image data. Implementations may keep a reference to the
    * original data rather than a copy. Only callable if isCropSupported() is true.
    *
+   * <p>If this bitmap's black matrix has already been made, the cropped bitmap's black matrix is
+   * copied out of it rather than computed again from the cropped luminance data, so a region is
+   * thresholded just as it was in the whole image.</p>
+   *
    * @param left The left coordinate, which must be in [0,getWidth())
    * @param top The top coordinate, which must be in [0,getHeight())
    * @param width The width of the rectangle to crop.
@@ -106,7 +131,15 @@ public final class BinaryBitmap {
    */
   public BinaryBitmap crop(int left, int top, int width, int height) {
     LuminanceSource newSource = binarizer.getLuminanceSource().crop(left, top, width, height);
-    return new BinaryBitmap(binarizer.createBinarizer(newSource));
+    Binarizer newBinarizer = createBinarizer(newSource);
+    BinaryBitmap cropped = new BinaryBitmap(newBinarizer);
+    if (matrix != null) {
+      BitPool bitPool = newBinarizer.getBitPool();
+      BitMatrix croppedMatrix = bitPool == null ? new BitMatrix(width, height) : bitPool.acquireMatrix(width, height);
+      matrix.getRegion(left, top, croppedMatrix);
+      cropped.matrix = croppedMatrix;
+    }
+    return cropped;
   }
 
   /**
@@ -124,7 +157,7 @@ public final class BinaryBitmap {
    */
   public BinaryBitmap rotateCounterClockwise() {
     LuminanceSource newSource = binarizer.getLuminanceSource().rotateCounterClockwise();
-    return new BinaryBitmap(binarizer.createBinarizer(newSource));
+    return new BinaryBitmap(createBinarizer(newSource));
   }
 
   /**
@@ -135,7 +168,14 @@ public final class BinaryBitmap {
    */
   public BinaryBitmap rotateCounterClockwise45() {
     LuminanceSource newSource = binarizer.getLuminanceSource().rotateCounterClockwise45();
-    return new BinaryBitmap(binarizer.createBinarizer(newSource));
+    return new BinaryBitmap(createBinarizer(newSource));
+  }
+
+  // Like Binarizer.createBinarizer(), but sharing this bitmap's pool
+  private Binarizer createBinarizer(LuminanceSource newSource) {
+    Binarizer newBinarizer = binarizer.createBinarizer(newSource);
+    newBinarizer.setBitPool(binarizer.getBitPool());
+    return newBinarizer;
   }
 
   @Override
@@ -16,6 +16,9 @@
 
 package com.google.zxing;
 
+import com.google.zxing.common.BitPool;
+import com.google.zxing.common.TaskRunner;
+
 import java.util.List;
 
 /**
@@ -98,6 +101,116 @@ public enum DecodeHintType {
    */
   ALLOWED_EAN_EXTENSIONS(int[].class),
 
+  /**
+   * Pool to take short-lived bit matrices and arrays from, and return them to, instead of
+   * allocating new ones for every decode. Maps to a {@link BitPool}.
+   */
+  BIT_POOL(BitPool.class),
+
+  /**
+   * Samples a detected QR Code from the luminance of the image and thresholds each module against
+   * the contrast of the code's own finder patterns, rather than reading it from the binarized
+   * image. Doesn't matter what it maps to; use {@link Boolean#TRUE}.
+   */
+  GRAYSCALE_SAMPLING(Void.class),
+
+  /**
+   * With {@link #GRAYSCALE_SAMPLING}, averages each module center with its eight neighboring
+   * pixels. Doesn't matter what it maps to; use {@link Boolean#TRUE}.
+   */
+  GRAYSCALE_AVERAGING(Void.class),
+
+  /**
+   * Remembers where a QR Code was found in the last frame, and samples the next frame the same
+   * way if its finder patterns have not moved. Maps to a
+   * {@link com.google.zxing.qrcode.detector.DetectionCache}.
+   */
+  DETECTION_CACHE(Object.class),
+
+  /**
+   * Runs parts of the search that can be done independently, such as scanning the rows of the
+   * image for QR Code finder patterns, possibly in parallel. With {@link #QR_MIN_PARALLEL_BLOCKS},
+   * also corrects the errors in each block of a large QR Code this way. Maps to a
+   * {@link TaskRunner}.
+   */
+  TASK_RUNNER(TaskRunner.class),
+
+  /**
+   * Range of QR Code versions expected in the image. The largest version takes the place of the
+   * default assumption that codes are at most version 10; codes are still assumed to take up at
+   * least a quarter of the image height, which together sets how many rows are skipped. Finder
+   * patterns too large for a code of the smallest version to fit in the image are rejected.
+   * Maps to an {@code int[]} of the smallest and largest version, from 1 to 40, for example
+   * [15, 40].
+   */
+  QR_VERSION_RANGE(int[].class),
+
+  /**
+   * Range of sizes, in pixels, of the modules of QR Codes expected in the image, for setups with
+   * a fixed distance to the code. Row skips and the size of accepted finder patterns are derived
+   * from it. Maps to a {@code float[]} of the smallest and largest module size, for example
+   * [1.5, 4].
+   */
+  QR_MODULE_SIZE(float[].class),
+
+  /**
+   * Largest number of image rows to scan for QR Code finder patterns. Rows are skipped evenly
+   * so that a first pass over the image fits, which bounds the cost of a search at the expense of
+   * missing small codes. Maps to an {@link Integer}.
+   */
+  QR_ROW_BUDGET(Integer.class),
+
+  /**
+   * Looks for a QR Code first in the few regions of the image that look most like one, from a
+   * {@link com.google.zxing.common.detector.RegionProposer}, and scans the whole image only if
+   * none of them holds one. Speeds up cluttered scenes where the code is a small part of the
+   * image. Maps to an {@link Integer}: the number of regions to try.
+   */
+  REGION_PROPOSALS(Integer.class),
+
+  /**
+   * Looks for light-on-dark QR Codes in the same pass as dark-on-light ones, rather than leaving
+   * the caller to invert the image and search it again. Doesn't matter what it maps to;
+   * use {@link Boolean#TRUE}.
+   */
+  ALSO_INVERTED(Void.class),
+
+  /**
+   * Corrects the errors in the blocks of QR Codes with at least this many error-correction blocks
+   * in parallel, through the {@link #TASK_RUNNER}; without this hint, blocks are always corrected
+   * one after another. Only codes of 16 blocks or more, which only the larger versions reach, are
+   * usually worth it, since handing out the blocks of smaller codes costs more than it saves.
+   * Maps to an {@link Integer}.
+   */
+  QR_MIN_PARALLEL_BLOCKS(Integer.class),
+
+  /**
+   * Writes the text of a QR Code to the given {@link Appendable} as it is decoded, rather than
+   * building a {@link String} of it, which suits large payloads; the text of the result is then
+   * null. Nothing is written until the code is known to decode, so attempts that fail, and are
+   * retried another way, leave nothing behind. Readers of several codes at once, such as
+   * {@link com.google.zxing.multi.qrcode.QRCodeMultiReader}, ignore it and give each result its
+   * text. Maps to an {@link Appendable}.
+   */
+  TEXT_OUTPUT(Appendable.class),
+
+  /**
+   * Only the bytes of a QR Code are wanted, as from {@link Result#getRawBytes()} and
+   * {@link ResultMetadataType#BYTE_SEGMENTS}: no text is decoded, so no character encoding is
+   * guessed, and the text of the result is null. Doesn't matter what it maps to;
+   * use {@link Boolean#TRUE}.
+   */
+  RAW_BYTES_ONLY(Void.class),
+
+  /**
+   * Reads the format information of a QR Code both as it is and mirrored up front, and decodes it
+   * only in the orientation that reads closer to valid format information, rather than decoding it
+   * as it is and then again mirrored if that fails. Mirrored codes, and grids that are not codes
+   * at all, then cost one decode instead of two. Doesn't matter what it maps to;
+   * use {@link Boolean#TRUE}.
+   */
+  QR_PICK_ORIENTATION(Void.class),
+
   // End of enumeration values.
   ;
 
@@ -30,6 +30,10 @@ import java.util.Arrays;
  * <p>The ordering of bits is row-major. Within each int, the least significant bits are used first,
  * meaning they represent lower x values. This is compatible with BitArray's implementation.</p>
  *
+ * <p>A matrix may also be created lazily by a binarizer, in which case each 8x8 tile of bits is
+ * only thresholded the first time a bit in it is read. This is invisible to callers, except that
+ * such a matrix is not safe for concurrent reads until it has been fully materialized.</p>
+ *
  * @author Sean Owen
  * @author dswitkin@google.com (Daniel Switkin)
  */
@@ -40,6 +44,23 @@ public final class BitMatrix implements Cloneable {
   private final int rowSize;
   private final int[] bits;
 
+  // Tiles are 8x8 so that a tile row always falls within a single int of a bit matrix row.
+  private static final int TILE_SIZE_POWER = 3;
+
+  // Only set while the matrix is still being lazily thresholded; see TileThresholder.
+  private TileThresholder tileThresholder;
+  private int[] validTiles;
+  private int tileColumns;
+  private int pendingTiles;
+
+  // Run-length index, filled in one row at a time by getRowTransitions()
+  private int[][] rowTransitions;
+  private int[] transitionBuffer;
+  // Column-major copy, built by getTransposed()
+  private BitMatrix transposed;
+  // Half resolution copy, kept until the matrix changes
+  private BitMatrix downsampled;
+
   // A helper to construct a square matrix.
   public BitMatrix(int dimension) {
     this(dimension, dimension);
@@ -55,6 +76,30 @@ public final class BitMatrix implements Cloneable {
     bits = new int[rowSize * height];
   }
 
+  /**
+   * Creates a matrix whose bits are filled in on demand, one tile at a time.
+   *
+   * @param width width of the matrix
+   * @param height height of the matrix
+   * @param tileThresholder computes the bits of a tile the first time any of them is needed
+   */
+  BitMatrix(int width, int height, TileThresholder tileThresholder) {
+    this(width, height);
+    setTileThresholder(tileThresholder);
+  }
+
+  /**
+   * Turns a clear matrix, such as one just taken from a {@link BitPool}, into a lazily
+   * thresholded one.
+   */
+  void setTileThresholder(TileThresholder tileThresholder) {
+    this.tileThresholder = tileThresholder;
+    this.tileColumns = (width + (1 << TILE_SIZE_POWER) - 1) >> TILE_SIZE_POWER;
+    int tileRows = (height + (1 << TILE_SIZE_POWER) - 1) >> TILE_SIZE_POWER;
+    this.pendingTiles = tileColumns * tileRows;
+    this.validTiles = new int[(pendingTiles + 31) / 32];
+  }
+
   public static BitMatrix parse(String stringRepresentation, String setString, String unsetString) {
     if (stringRepresentation == null) {
       throw new IllegalArgumentException();
@@ -120,6 +165,9 @@ public final class BitMatrix implements Cloneable {
    * @return value of given bit in matrix
    */
   public boolean get(int x, int y) {
+    if (tileThresholder != null) {
+      ensureTile(x >> TILE_SIZE_POWER, y >> TILE_SIZE_POWER);
+    }
     int offset = y * rowSize + (x / 32);
     return ((bits[offset] >>> (x & 0x1f)) & 1) != 0;
   }
@@ -133,11 +181,16 @@ public final class BitMatrix implements Cloneable {
   public void set(int x, int y) {
     int offset = y * rowSize + (x / 32);
     bits[offset] |= 1 << (x & 0x1f);
+    rowChanged(y);
   }
 
   public void unset(int x, int y) {
+    if (tileThresholder != null) {
+      ensureTile(x >> TILE_SIZE_POWER, y >> TILE_SIZE_POWER);
+    }
     int offset = y * rowSize + (x / 32);
     bits[offset] &= ~(1 << (x & 0x1f));
+    rowChanged(y);
   }
 
   /**
@@ -147,14 +200,21 @@ public final class BitMatrix implements Cloneable {
    * @param y The vertical component (i.e. which row)
    */
   public void flip(int x, int y) {
+    if (tileThresholder != null) {
+      ensureTile(x >> TILE_SIZE_POWER, y >> TILE_SIZE_POWER);
+    }
     int offset = y * rowSize + (x / 32);
     bits[offset] ^= 1 << (x & 0x1f);
+    rowChanged(y);
   }
 
   /**
    * Exclusive-or (XOR): Flip the bit in this {@code BitMatrix} if the corresponding
    * mask bit is set.
    *
+   * <p>This works a whole int of bits at a time and only reads the mask, so a mask that is not
+   * lazily thresholded may be applied by several threads at once.</p>
+   *
    * @param mask XOR mask
    */
   public void xor(BitMatrix mask) {
@@ -162,13 +222,12 @@ public final class BitMatrix implements Cloneable {
         || rowSize != mask.getRowSize()) {
       throw new IllegalArgumentException("input matrix dimensions do not match");
     }
-    BitArray rowArray = new BitArray(width / 32 + 1);
-    for (int y = 0; y < height; y++) {
-      int offset = y * rowSize;
-      int[] row = mask.getRow(y, rowArray).getBitArray();
-      for (int x = 0; x < rowSize; x++) {
-        bits[offset + x] ^= row[x];
-      }
+    materialize();
+    mask.materialize();
+    allRowsChanged();
+    int[] maskBits = mask.bits;
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] ^= maskBits[i];
     }
   }
 
@@ -176,6 +235,9 @@ public final class BitMatrix implements Cloneable {
    * Clears all bits (sets to false).
    */
   public void clear() {
+    tileThresholder = null;
+    validTiles = null;
+    allRowsChanged();
     int max = bits.length;
     for (int i = 0; i < max; i++) {
       bits[i] = 0;
@@ -202,6 +264,7 @@ public final class BitMatrix implements Cloneable {
     if (bottom > this.height || right > this.width) {
       throw new IllegalArgumentException("The region must fit inside the matrix");
     }
+    allRowsChanged();
     for (int y = top; y < bottom; y++) {
       int offset = y * rowSize;
       for (int x = left; x < right; x++) {
@@ -210,6 +273,49 @@ public final class BitMatrix implements Cloneable {
     }
   }
 
+  /**
+   * Copies a region of this matrix into another matrix, a word at a time.
+   *
+   * @param left The horizontal position of the region in this matrix
+   * @param top The vertical position of the region in this matrix
+   * @param region matrix to copy into; its size is the size of the region, which must fit inside
+   *  this matrix
+   */
+  public void getRegion(int left, int top, BitMatrix region) {
+    if (top < 0 || left < 0) {
+      throw new IllegalArgumentException("Left and top must be nonnegative");
+    }
+    if (top + region.height > height || left + region.width > width) {
+      throw new IllegalArgumentException("The region must fit inside the matrix");
+    }
+    region.tileThresholder = null;
+    region.validTiles = null;
+    region.allRowsChanged();
+    int firstWord = left >>> 5;
+    int shift = left & 0x1f;
+    int regionRowSize = region.rowSize;
+    int lastWordMask = (region.width & 0x1f) == 0 ? -1 : (1 << (region.width & 0x1f)) - 1;
+    for (int y = 0; y < region.height; y++) {
+      if (tileThresholder != null) {
+        int tileY = (top + y) >> TILE_SIZE_POWER;
+        int lastTileX = (left + region.width - 1) >> TILE_SIZE_POWER;
+        for (int tileX = left >> TILE_SIZE_POWER; tileX <= lastTileX && tileThresholder != null; tileX++) {
+          ensureTile(tileX, tileY);
+        }
+      }
+      int from = (top + y) * rowSize + firstWord;
+      int to = y * regionRowSize;
+      for (int x = 0; x < regionRowSize; x++) {
+        int word = bits[from + x] >>> shift;
+        if (shift != 0 && firstWord + x + 1 < rowSize) {
+          word |= bits[from + x + 1] << (32 - shift);
+        }
+        region.bits[to + x] = word;
+      }
+      region.bits[to + regionRowSize - 1] &= lastWordMask;
+    }
+  }
+
   /**
    * A fast method to retrieve one row of data from the matrix as a BitArray.
    *
@@ -224,6 +330,9 @@ public final class BitMatrix implements Cloneable {
     } else {
       row.clear();
     }
+    if (tileThresholder != null) {
+      ensureTileRow(y >> TILE_SIZE_POWER);
+    }
     int offset = y * rowSize;
     for (int x = 0; x < rowSize; x++) {
       row.setBulk(x * 32, bits[offset + x]);
@@ -236,7 +345,218 @@ public final class BitMatrix implements Cloneable {
    * @param row {@link BitArray} to copy from
    */
   public void setRow(int y, BitArray row) {
+    if (tileThresholder != null) {
+      ensureTileRow(y >> TILE_SIZE_POWER);
+    }
     System.arraycopy(row.getBitArray(), 0, bits, y * rowSize, rowSize);
+    rowChanged(y);
+  }
+
+  /**
+   * Gives a run-length view of one row, for scanning code that only cares where the row changes
+   * color. The index is built from the packed words the first time a row is asked for, skipping
+   * over runs a word at a time, and is kept until the row is modified.
+   *
+   * @param y The row to index
+   * @return x coordinates at which the row changes color, in increasing order. The row starts
+   *         white, so a coordinate at an even index starts a black run and one at an odd index
+   *         starts a white run; the last run ends at the width of the matrix. The array is shared
+   *         with later calls and must not be modified.
+   */
+  public int[] getRowTransitions(int y) {
+    if (rowTransitions == null) {
+      rowTransitions = new int[height][];
+    }
+    int[] transitions = rowTransitions[y];
+    if (transitions == null) {
+      if (transitionBuffer == null) {
+        transitionBuffer = new int[width];
+      }
+      int count = getRowTransitions(y, transitionBuffer);
+      transitions = new int[count];
+      System.arraycopy(transitionBuffer, 0, transitions, 0, count);
+      rowTransitions[y] = transitions;
+    }
+    return transitions;
+  }
+
+  /**
+   * Like {@link #getRowTransitions(int)}, but writes the transitions into the caller's array and
+   * neither reads nor fills the cache. Once the matrix is fully computed, for instance after
+   * {@link #getTransposed()} has been called, this may be called from several threads at once.
+   *
+   * @param y The row to index
+   * @param transitions array of at least {@link #getWidth()} entries to write the transitions to
+   * @return number of transitions written
+   */
+  public int getRowTransitions(int y, int[] transitions) {
+    return getRowTransitions(y, 0, width, transitions);
+  }
+
+  /**
+   * Like {@link #getRowTransitions(int, int[])}, for rows top up to bottom of column x, as read
+   * from the copy that {@link #getTransposed()} makes. If this matrix is thresholded lazily and
+   * that copy has not been made yet, the column is read a bit at a time instead, so that only the
+   * tiles it crosses are computed.
+   *
+   * @param x The column to index
+   * @param top first row to index
+   * @param bottom row just past the last one to index
+   * @param transitions array of at least bottom - top entries to write the transitions to
+   * @return number of transitions written, as offsets from top; like a row, the part of the
+   *         column indexed is taken to start white
+   */
+  public int getColumnTransitions(int x, int top, int bottom, int[] transitions) {
+    if (transposed == null && tileThresholder != null) {
+      int count = 0;
+      boolean black = false;
+      for (int y = top; y < bottom; y++) {
+        if (get(x, y) != black) {
+          transitions[count++] = y - top;
+          black = !black;
+        }
+      }
+      return count;
+    }
+    return getTransposed().getRowTransitions(x, top, bottom, transitions);
+  }
+
+  /**
+   * Indexes row y from column from up to column to, like {@link #getRowTransitions(int, int[])},
+   * with coordinates as offsets from column from.
+   */
+  private int getRowTransitions(int y, int from, int to, int[] transitions) {
+    if (tileThresholder != null) {
+      ensureTileRow(y >> TILE_SIZE_POWER);
+    }
+    int count = 0;
+    boolean black = false;
+    int offset = y * rowSize;
+    int firstWord = from >> 5;
+    int endWord = (to + 31) >> 5;
+    for (int x32 = firstWord; x32 < endWord; x32++) {
+      int theBits = bits[offset + x32];
+      // Bits that differ from the color of the current run
+      int changes = black ? ~theBits : theBits;
+      if (x32 == firstWord) {
+        // Take the bits before the first column to be white
+        changes &= -1 << (from & 0x1f);
+      }
+      while (changes != 0) {
+        int bit = Integer.numberOfTrailingZeros(changes);
+        int x = x32 * 32 + bit;
+        if (x >= to) {
+          return count;
+        }
+        transitions[count++] = x - from;
+        black = !black;
+        // Look for the next change above this bit; 2 << 31 wraps to 0, which clears them all
+        changes = (black ? ~theBits : theBits) & ~((2 << bit) - 1);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns a copy of this matrix with rows and columns swapped, so that column x of this matrix
+   * is row x of the copy. Scanning code that walks down a column can then read whole words, with
+   * {@link #getRowTransitions(int)} for instance, instead of touching one int per pixel. The copy
+   * is built in one pass over 32x32 blocks and kept until this matrix is modified.
+   *
+   * @return transposed matrix, which is shared with later calls and must not be modified
+   */
+  public BitMatrix getTransposed() {
+    if (transposed == null) {
+      materialize();
+      BitMatrix result = new BitMatrix(height, width);
+      int[] resultBits = result.bits;
+      int resultRowSize = result.rowSize;
+      int[] block = new int[32];
+      for (int y32 = 0; y32 < resultRowSize; y32++) {
+        int rows = Math.min(32, height - y32 * 32);
+        for (int x32 = 0; x32 < rowSize; x32++) {
+          for (int i = 0; i < 32; i++) {
+            block[i] = i < rows ? bits[(y32 * 32 + i) * rowSize + x32] : 0;
+          }
+          transpose32(block);
+          int columns = Math.min(32, width - x32 * 32);
+          for (int i = 0; i < columns; i++) {
+            resultBits[(x32 * 32 + i) * resultRowSize + y32] = block[i];
+          }
+        }
+      }
+      transposed = result;
+    }
+    return transposed;
+  }
+
+  /**
+   * Returns a copy of this matrix at half the resolution in each direction, for scanning code
+   * that looks for large features first. Each bit of the copy is set if at least two of the four
+   * bits of its 2x2 block are; counting ties as set keeps thin lines from vanishing. A trailing
+   * odd row or column is dropped. The copy is built a pair of rows at a time, from whole words,
+   * and kept until this matrix is modified.
+   *
+   * @return downsampled matrix, which is shared with later calls and must not be modified
+   * @throws IllegalStateException if this matrix is less than 2 bits wide or high
+   */
+  public BitMatrix getDownsampled() {
+    if (downsampled == null) {
+      if (width < 2 || height < 2) {
+        throw new IllegalStateException("Matrix is too small to downsample");
+      }
+      materialize();
+      BitMatrix result = new BitMatrix(width >> 1, height >> 1);
+      int[] resultBits = result.bits;
+      int resultRowSize = result.rowSize;
+      int lastWordMask = (result.width & 0x1f) == 0 ? -1 : (1 << (result.width & 0x1f)) - 1;
+      for (int y = 0; y < result.height; y++) {
+        int top = 2 * y * rowSize;
+        int bottom = top + rowSize;
+        int to = y * resultRowSize;
+        for (int x = 0; x < resultRowSize; x++) {
+          // Each result word takes 64 bits, which are two words of each row
+          int low = downsampleWord(bits[top + 2 * x], bits[bottom + 2 * x]);
+          int high = 2 * x + 1 < rowSize ?
+              downsampleWord(bits[top + 2 * x + 1], bits[bottom + 2 * x + 1]) : 0;
+          resultBits[to + x] = low | (high << 16);
+        }
+        resultBits[to + resultRowSize - 1] &= lastWordMask;
+      }
+      downsampled = result;
+    }
+    return downsampled;
+  }
+
+  /**
+   * @return the 16 bits for the 2x2 blocks of a word of two adjacent rows, in the low half
+   */
+  private static int downsampleWord(int top, int bottom) {
+    int topNext = top >>> 1;
+    int bottomNext = bottom >>> 1;
+    // In the even bits, whether at least two of the block's bits are set
+    int x = ((top & topNext) | (bottom & bottomNext) | ((top | topNext) & (bottom | bottomNext))) &
+        0x55555555;
+    // Gather the even bits into the low half, as in Hacker's Delight
+    x = (x | (x >>> 1)) & 0x33333333;
+    x = (x | (x >>> 2)) & 0x0f0f0f0f;
+    x = (x | (x >>> 4)) & 0x00ff00ff;
+    return (x | (x >>> 8)) & 0x0000ffff;
+  }
+
+  /**
+   * Transposes a 32x32 block of bits in place, where bit j of block[i] is the bit at row i and
+   * column j. Swaps ever smaller off-diagonal sub-blocks, as in Hacker's Delight.
+   */
+  private static void transpose32(int[] block) {
+    int mask = 0x0000ffff;
+    for (int j = 16; j != 0; j >>>= 1, mask ^= mask << j) {
+      for (int k = 0; k < 32; k = ((k | j) + 1) & ~j) {
+        int t = ((block[k] >>> j) ^ block[k | j]) & mask;
+        block[k | j] ^= t;
+        block[k] ^= t << j;
+      }
+    }
   }
 
   /**
@@ -263,6 +583,7 @@ public final class BitMatrix implements Cloneable {
    * @return {@code left,top,width,height} enclosing rectangle of all 1 bits, or null if it is all white
    */
   public int[] getEnclosingRectangle() {
+    materialize();
     int left = width;
     int top = height;
     int right = -1;
@@ -316,6 +637,7 @@ public final class BitMatrix implements Cloneable {
    * @return {@code x,y} coordinate of top-left-most 1 bit, or null if it is all white
    */
   public int[] getTopLeftOnBit() {
+    materialize();
     int bitsOffset = 0;
     while (bitsOffset < bits.length && bits[bitsOffset] == 0) {
       bitsOffset++;
@@ -336,6 +658,7 @@ public final class BitMatrix implements Cloneable {
   }
 
   public int[] getBottomRightOnBit() {
+    materialize();
     int bitsOffset = bits.length - 1;
     while (bitsOffset >= 0 && bits[bitsOffset] == 0) {
       bitsOffset--;
@@ -378,18 +701,69 @@ public final class BitMatrix implements Cloneable {
     return rowSize;
   }
 
+  private void rowChanged(int y) {
+    if (rowTransitions != null) {
+      rowTransitions[y] = null;
+    }
+    transposed = null;
+    downsampled = null;
+  }
+
+  private void allRowsChanged() {
+    rowTransitions = null;
+    transposed = null;
+    downsampled = null;
+  }
+
+  /**
+   * Thresholds every tile that has not been read yet, if this matrix was created lazily.
+   * Afterwards the matrix behaves exactly like an eagerly computed one.
+   */
+  private void materialize() {
+    if (tileThresholder == null) {
+      return;
+    }
+    int tileRows = (height + (1 << TILE_SIZE_POWER) - 1) >> TILE_SIZE_POWER;
+    for (int tileY = 0; tileY < tileRows && tileThresholder != null; tileY++) {
+      ensureTileRow(tileY);
+    }
+  }
+
+  private void ensureTileRow(int tileY) {
+    for (int tileX = 0; tileX < tileColumns && tileThresholder != null; tileX++) {
+      ensureTile(tileX, tileY);
+    }
+  }
+
+  private void ensureTile(int tileX, int tileY) {
+    int tile = tileY * tileColumns + tileX;
+    int mask = 1 << (tile & 0x1f);
+    if ((validTiles[tile >> 5] & mask) == 0) {
+      validTiles[tile >> 5] |= mask;
+      tileThresholder.thresholdTile(tileX, tileY, bits, rowSize);
+      if (--pendingTiles == 0) {
+        // Every tile is known now; drop the thresholder so reads take the fast path again
+        tileThresholder = null;
+        validTiles = null;
+      }
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof BitMatrix)) {
       return false;
     }
     BitMatrix other = (BitMatrix) o;
+    materialize();
+    other.materialize();
     return width == other.width && height == other.height && rowSize == other.rowSize &&
     Arrays.equals(bits, other.bits);
   }
 
   @Override
   public int hashCode() {
+    materialize();
     int hash = width;
     hash = 31 * hash + width;
     hash = 31 * hash + height;
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Recycles {@link BitMatrix} and {@link BitArray} instances from one decode to the next, so
+ * that a scanner decoding frame after frame does not allocate a new frame-sized matrix, sampled
+ * grid and row buffer every time. Released buffers are kept in buckets by exact size, and handed
+ * out again cleared.</p>
+ *
+ * <p>A pool is not thread-safe. On the JVM each decoding thread should have its own; in the
+ * browser one per scanner is enough. A pool is passed to readers with
+ * {@link com.google.zxing.DecodeHintType#BIT_POOL} and to binarizers with
+ * {@link com.google.zxing.Binarizer#setBitPool(BitPool)}.</p>
+ *
+ * <p>In tracking mode the pool also remembers each buffer it has handed out until it comes back,
+ * so that buffers which are never released can be reported as leaks by {@link #toString()}.</p>
+ */
+public final class BitPool {
+
+  // Upper bound on the buffers kept per bucket; anything beyond that is left to the collector
+  private static final int MAX_FREE_PER_SIZE = 4;
+
+  private final boolean tracking;
+  private final List<Bucket> buckets;
+  private final List<Object> outstanding;
+  private int hits;
+  private int misses;
+  private int releases;
+
+  public BitPool() {
+    this(false);
+  }
+
+  /**
+   * @param tracking if true, remember every buffer handed out until it is released, so that
+   *  leaks can be reported
+   */
+  public BitPool(boolean tracking) {
+    this.tracking = tracking;
+    buckets = new ArrayList<>();
+    outstanding = tracking ? new ArrayList<>() : null;
+  }
+
+  public boolean isTracking() {
+    return tracking;
+  }
+
+  /**
+   * @param width width of the matrix
+   * @param height height of the matrix
+   * @return a cleared matrix of the given size, reused if one has been released
+   */
+  public BitMatrix acquireMatrix(int width, int height) {
+    Bucket bucket = findBucket(width, height, false);
+    BitMatrix matrix;
+    if (bucket == null || bucket.free.isEmpty()) {
+      misses++;
+      matrix = new BitMatrix(width, height);
+    } else {
+      hits++;
+      matrix = (BitMatrix) bucket.free.remove(bucket.free.size() - 1);
+      matrix.clear();
+    }
+    if (tracking) {
+      outstanding.add(matrix);
+    }
+    return matrix;
+  }
+
+  /**
+   * Hands a matrix back for reuse. The caller must not use it afterwards.
+   *
+   * @param matrix matrix from {@link #acquireMatrix(int, int)}, or any other matrix of a size
+   *  that is likely to be asked for again
+   */
+  public void releaseMatrix(BitMatrix matrix) {
+    release(matrix, findBucket(matrix.getWidth(), matrix.getHeight(), true));
+  }
+
+  /**
+   * @param size size of the array
+   * @return a cleared array of the given size, reused if one has been released
+   */
+  public BitArray acquireArray(int size) {
+    Bucket bucket = findBucket(size, -1, false);
+    BitArray array;
+    if (bucket == null || bucket.free.isEmpty()) {
+      misses++;
+      array = new BitArray(size);
+    } else {
+      hits++;
+      array = (BitArray) bucket.free.remove(bucket.free.size() - 1);
+      array.clear();
+    }
+    if (tracking) {
+      outstanding.add(array);
+    }
+    return array;
+  }
+
+  /**
+   * Hands an array back for reuse. The caller must not use it afterwards.
+   *
+   * @param array array from {@link #acquireArray(int)}, or any other array of a size that is
+   *  likely to be asked for again
+   */
+  public void releaseArray(BitArray array) {
+    release(array, findBucket(array.getSize(), -1, true));
+  }
+
+  /**
+   * @return number of acquisitions that reused a released buffer
+   */
+  public int getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return number of acquisitions that had to allocate a new buffer
+   */
+  public int getMissCount() {
+    return misses;
+  }
+
+  /**
+   * @return fraction of acquisitions that reused a released buffer, or 0 if there were none
+   */
+  public float getHitRate() {
+    int total = hits + misses;
+    return total == 0 ? 0.0f : (float) hits / total;
+  }
+
+  /**
+   * @return number of buffers handed out and not yet released. Buffers released without having
+   *  been acquired from this pool also count against this, unless the pool is tracking.
+   */
+  public int getOutstandingCount() {
+    return tracking ? outstanding.size() : hits + misses - releases;
+  }
+
+  /**
+   * Forgets all statistics, and in tracking mode all outstanding buffers, but keeps the
+   * released buffers for reuse.
+   */
+  public void resetStatistics() {
+    hits = 0;
+    misses = 0;
+    releases = 0;
+    if (tracking) {
+      outstanding.clear();
+    }
+  }
+
+  private void release(Object buffer, Bucket bucket) {
+    if (tracking && !removeOutstanding(buffer)) {
+      throw new IllegalArgumentException("Buffer was not acquired from this pool, or released twice");
+    }
+    releases++;
+    if (bucket.free.size() < MAX_FREE_PER_SIZE) {
+      bucket.free.add(buffer);
+    }
+  }
+
+  // Identity rather than equals(), which compares bits
+  private boolean removeOutstanding(Object buffer) {
+    for (int i = outstanding.size() - 1; i >= 0; i--) {
+      if (outstanding.get(i) == buffer) {
+        outstanding.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // A scanner only ever asks for a handful of sizes, so a list is faster than hashing
+  private Bucket findBucket(int width, int height, boolean create) {
+    for (Bucket bucket : buckets) {
+      if (bucket.width == width && bucket.height == height) {
+        return bucket;
+      }
+    }
+    if (!create) {
+      return null;
+    }
+    Bucket bucket = new Bucket(width, height);
+    buckets.add(bucket);
+    return bucket;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(100);
+    result.append("hits: ").append(hits);
+    result.append(", misses: ").append(misses);
+    result.append(", hit rate: ").append(Math.round(getHitRate() * 100.0f)).append('%');
+    result.append(", outstanding: ").append(getOutstandingCount());
+    if (tracking) {
+      for (Object buffer : outstanding) {
+        result.append("\n  leaked ");
+        if (buffer instanceof BitMatrix) {
+          BitMatrix matrix = (BitMatrix) buffer;
+          result.append("BitMatrix ").append(matrix.getWidth()).append('x').append(matrix.getHeight());
+        } else {
+          result.append("BitArray ").append(((BitArray) buffer).getSize());
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Free buffers of one size; height is -1 for arrays.
+   */
+  private static final class Bucket {
+    private final int width;
+    private final int height;
+    private final List<Object> free;
+    private Bucket(int width, int height) {
+      this.width = width;
+      this.height = height;
+      free = new ArrayList<>(MAX_FREE_PER_SIZE);
+    }
+  }
+
+}
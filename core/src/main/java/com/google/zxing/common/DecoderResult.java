@@ -33,6 +33,7 @@ public final class DecoderResult {
   private final String ecLevel;
   private Integer errorsCorrected;
   private Integer erasures;
+  private int[] blockErrorsCorrected;
   private Object other;
   private final int structuredAppendParity;
   private final int structuredAppendSequenceNumber;
@@ -82,6 +83,18 @@ public final class DecoderResult {
     this.errorsCorrected = errorsCorrected;
   }
 
+  /**
+   * @return number of codewords corrected in each error-correction block, in the order the blocks
+   *  are read, or null if not known
+   */
+  public int[] getBlockErrorsCorrected() {
+    return blockErrorsCorrected;
+  }
+
+  public void setBlockErrorsCorrected(int[] blockErrorsCorrected) {
+    this.blockErrorsCorrected = blockErrorsCorrected;
+  }
+
   public Integer getErasures() {
     return erasures;
   }
@@ -48,41 +48,155 @@ public final class DefaultGridSampler extends GridSampler {
                               int dimensionX,
                               int dimensionY,
                               PerspectiveTransform transform) throws NotFoundException {
+    return sampleGrid(image, dimensionX, dimensionY, transform, null);
+  }
+
+  @Override
+  public BitMatrix sampleGrid(BitMatrix image,
+                              int dimensionX,
+                              int dimensionY,
+                              PerspectiveTransform transform,
+                              BitPool pool) throws NotFoundException {
     if (dimensionX <= 0 || dimensionY <= 0) {
       throw NotFoundException.getNotFoundInstance();      
     }
-    BitMatrix bits = new BitMatrix(dimensionX, dimensionY);
-    float[] points = new float[2 * dimensionX];
+    if (pool == null) {
+      BitMatrix bits = new BitMatrix(dimensionX, dimensionY);
+      sampleInto(image, transform, bits);
+      return bits;
+    }
+    BitMatrix bits = pool.acquireMatrix(dimensionX, dimensionY);
+    try {
+      sampleInto(image, transform, bits);
+    } catch (NotFoundException nfe) {
+      pool.releaseMatrix(bits);
+      throw nfe;
+    }
+    return bits;
+  }
+
+  /**
+   * Samples the grid row by row, with the module centers from {@link #transformRow}. Bits are
+   * collected into words and written a row at a time.
+   *
+   * <p>Bounds are checked once for the whole grid by {@link #checkGridBounds}. Every module
+   * center is then on the image or less than a pixel off it, and only needs to be clamped like
+   * {@link #checkAndNudgePoints(BitMatrix, float[])} nudges the ends of a row.</p>
+   */
+  private static void sampleInto(BitMatrix image, PerspectiveTransform transform, BitMatrix bits)
+      throws NotFoundException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int dimensionX = bits.getWidth();
+    int dimensionY = bits.getHeight();
+
+    checkGridBounds(transform, dimensionX, dimensionY, width, height);
+
+    int[] points = new int[2 * dimensionX];
+    int[] rowBits = new int[(dimensionX + 31) / 32];
+    BitArray row = new BitArray(rowBits, dimensionX);
     for (int y = 0; y < dimensionY; y++) {
-      int max = points.length;
-      float iValue = (float) y + 0.5f;
-      for (int x = 0; x < max; x += 2) {
-        points[x] = (float) (x / 2) + 0.5f;
-        points[x + 1] = iValue;
-      }
-      transform.transformPoints(points);
-      // Quick check to see if points transformed to something inside the image;
-      // sufficient to check the endpoints
-      checkAndNudgePoints(image, points);
-      try {
-        for (int x = 0; x < max; x += 2) {
-          if (image.get((int) points[x], (int) points[x + 1])) {
-            // Black(-ish) pixel
-            bits.set(x / 2, y);
-          }
+      transformRow(transform, y, width - 1, height - 1, points);
+      int word = 0;
+      for (int x = 0; x < dimensionX; x++) {
+        if (image.get(points[2 * x], points[2 * x + 1])) {
+          // Black(-ish) pixel
+          word |= 1 << (x & 0x1f);
+        }
+        if ((x & 0x1f) == 0x1f) {
+          rowBits[x >> 5] = word;
+          word = 0;
         }
-      } catch (ArrayIndexOutOfBoundsException aioobe) {
-        // This feels wrong, but, sometimes if the finder patterns are misidentified, the resulting
-        // transform gets "twisted" such that it maps a straight line of points to a set of points
-        // whose endpoints are in bounds, but others are not. There is probably some mathematical
-        // way to detect this about the transformation that I don't know yet.
-        // This results in an ugly runtime exception despite our clever checks above -- can't have
-        // that. We could check each point's coordinates but that feels duplicative. We settle for
-        // catching and wrapping ArrayIndexOutOfBoundsException.
+      }
+      if ((dimensionX & 0x1f) != 0) {
+        rowBits[dimensionX >> 5] = word;
+      }
+      bits.setRow(y, row);
+    }
+  }
+
+  /**
+   * Finds the pixels at the centers of the modules of one row of a grid. Along a row the
+   * numerators and the denominator of the transform are affine in x, so rather than transforming
+   * every module center from scratch, each one advances by a constant from one module to the
+   * next. The sums are kept in double precision so that rounding does not build up along a row.
+   *
+   * @param transform maps grid coordinates to image coordinates
+   * @param y row of the grid
+   * @param maxX largest x coordinate on the image; pixels are clamped to the image
+   * @param maxY largest y coordinate on the image
+   * @param points receives the x and y coordinates of the pixel of each module, in pairs; its
+   *  length is twice the width of the grid
+   */
+  static void transformRow(PerspectiveTransform transform, int y, int maxX, int maxY, int[] points) {
+    float a11 = transform.a11;
+    float a12 = transform.a12;
+    float a13 = transform.a13;
+    float left = 0.5f;
+    float iValue = (float) y + 0.5f;
+    double xNumerator = a11 * left + transform.a21 * iValue + transform.a31;
+    double yNumerator = a12 * left + transform.a22 * iValue + transform.a32;
+    double denominator = a13 * left + transform.a23 * iValue + transform.a33;
+    for (int x = 0; x < points.length; x += 2) {
+      int imageX = (int) (xNumerator / denominator);
+      int imageY = (int) (yNumerator / denominator);
+      if (imageX < 0) {
+        imageX = 0;
+      } else if (imageX > maxX) {
+        imageX = maxX;
+      }
+      if (imageY < 0) {
+        imageY = 0;
+      } else if (imageY > maxY) {
+        imageY = maxY;
+      }
+      points[x] = imageX;
+      points[x + 1] = imageY;
+      xNumerator += a11;
+      yNumerator += a12;
+      denominator += a13;
+    }
+  }
+
+  /**
+   * Checks that a grid transformed to the image lands on it, give or take a pixel at the edges.
+   * If the denominator of the transform has the same sign at all four corners of the grid, it has
+   * that sign everywhere in between, and the transform maps the grid onto the convex
+   * quadrilateral spanned by the images of its corners; so it is enough to check those.
+   *
+   * @throws NotFoundException if any module center of the grid may be off the image
+   */
+  static void checkGridBounds(PerspectiveTransform transform,
+                              int dimensionX,
+                              int dimensionY,
+                              int width,
+                              int height) throws NotFoundException {
+    float left = 0.5f;
+    float right = (float) dimensionX - 0.5f;
+    float top = 0.5f;
+    float bottom = (float) dimensionY - 0.5f;
+    float a13 = transform.a13;
+    float a23 = transform.a23;
+    float a33 = transform.a33;
+    float topLeft = a13 * left + a23 * top + a33;
+    float topRight = a13 * right + a23 * top + a33;
+    float bottomLeft = a13 * left + a23 * bottom + a33;
+    float bottomRight = a13 * right + a23 * bottom + a33;
+    boolean positive = topLeft > 0.0f && topRight > 0.0f && bottomLeft > 0.0f && bottomRight > 0.0f;
+    boolean negative = topLeft < 0.0f && topRight < 0.0f && bottomLeft < 0.0f && bottomRight < 0.0f;
+    if (!positive && !negative) {
+      // The grid crosses the line that the transform sends to infinity
+      throw NotFoundException.getNotFoundInstance();
+    }
+    float[] corners = {left, top, right, top, left, bottom, right, bottom};
+    transform.transformPoints(corners);
+    for (int i = 0; i < corners.length; i += 2) {
+      int x = (int) corners[i];
+      int y = (int) corners[i + 1];
+      if (x < -1 || x > width || y < -1 || y > height) {
         throw NotFoundException.getNotFoundInstance();
       }
     }
-    return bits;
   }
 
 }
@@ -29,10 +29,22 @@ public class DetectorResult {
 
   private final BitMatrix bits;
   private final ResultPoint[] points;
+  private final boolean inverted;
 
   public DetectorResult(BitMatrix bits, ResultPoint[] points) {
+    this(bits, points, false);
+  }
+
+  /**
+   * @param bits sampled grid, black where the image is
+   * @param points points of interest
+   * @param inverted true if the barcode is light on dark, so that its modules are set where the
+   *  grid is white
+   */
+  public DetectorResult(BitMatrix bits, ResultPoint[] points, boolean inverted) {
     this.bits = bits;
     this.points = points;
+    this.inverted = inverted;
   }
 
   public final BitMatrix getBits() {
@@ -43,4 +55,8 @@ public class DetectorResult {
     return points;
   }
 
+  public final boolean isInverted() {
+    return inverted;
+  }
+
 }
\ No newline at end of file
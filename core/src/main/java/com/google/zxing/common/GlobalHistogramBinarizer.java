@@ -28,6 +28,10 @@ import com.google.zxing.NotFoundException;
  *
  * Faster mobile devices and all desktop applications should probably use HybridBinarizer instead.
  *
+ * Optionally the black point of a row can be estimated once per horizontal band of rows instead
+ * of once per row, which saves most of the histogram work when a reader walks every row of the
+ * image. Band black points are remembered for the life of the binarizer.
+ *
  * @author dswitkin@google.com (Daniel Switkin)
  * @author Sean Owen
  */
@@ -38,13 +42,37 @@ public class GlobalHistogramBinarizer extends Binarizer {
   private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
   private static final byte[] EMPTY = new byte[0];
 
+  // Marks a row or band whose histogram had too little contrast
+  private static final int NO_BLACK_POINT = -1;
+
   private byte[] luminances;
   private final int[] buckets;
+  private final int bandHeight;
+  // Black point per band if bandHeight > 0; zero until estimated
+  private int[] bandBlackPoints;
 
   public GlobalHistogramBinarizer(LuminanceSource source) {
+    this(source, 0);
+  }
+
+  /**
+   * @param source luminance source to binarize
+   * @param bandHeight if positive, {@link #getBlackRow(int, BitArray)} estimates one black point
+   *  for each band of this many rows, from a few rows sampled across the band, rather than one
+   *  for each row
+   */
+  public GlobalHistogramBinarizer(LuminanceSource source, int bandHeight) {
     super(source);
+    if (bandHeight < 0) {
+      throw new IllegalArgumentException("Band height must be non-negative");
+    }
     luminances = EMPTY;
     buckets = new int[LUMINANCE_BUCKETS];
+    this.bandHeight = bandHeight;
+  }
+
+  public int getBandHeight() {
+    return bandHeight;
   }
 
   // Applies simple sharpening to the row data to improve performance of the 1D Readers.
@@ -58,13 +86,23 @@ public class GlobalHistogramBinarizer extends Binarizer {
       row.clear();
     }
 
-    initArrays(width);
-    byte[] localLuminances = source.getRow(y, luminances);
-    int[] localBuckets = buckets;
-    for (int x = 0; x < width; x++) {
-      localBuckets[(localLuminances[x] & 0xff) >> LUMINANCE_SHIFT]++;
+    int blackPoint;
+    byte[] localLuminances;
+    if (bandHeight > 0) {
+      blackPoint = getBandBlackPoint(y / bandHeight);
+      if (luminances.length < width) {
+        luminances = new byte[width];
+      }
+      localLuminances = source.getRow(y, luminances);
+    } else {
+      initArrays(width);
+      localLuminances = source.getRow(y, luminances);
+      int[] localBuckets = buckets;
+      for (int x = 0; x < width; x++) {
+        localBuckets[(localLuminances[x] & 0xff) >> LUMINANCE_SHIFT]++;
+      }
+      blackPoint = estimateBlackPoint(localBuckets);
     }
-    int blackPoint = estimateBlackPoint(localBuckets);
 
     if (width < 3) {
       // Special case for very small images
@@ -95,7 +133,7 @@ public class GlobalHistogramBinarizer extends Binarizer {
     LuminanceSource source = getLuminanceSource();
     int width = source.getWidth();
     int height = source.getHeight();
-    BitMatrix matrix = new BitMatrix(width, height);
+    BitMatrix matrix = acquireBitMatrix(width, height);
 
     // Quickly calculates the histogram by sampling four rows from the image. This proved to be
     // more robust on the blackbox tests than sampling a diagonal as we used to do.
@@ -131,7 +169,44 @@ public class GlobalHistogramBinarizer extends Binarizer {
 
   @Override
   public Binarizer createBinarizer(LuminanceSource source) {
-    return new GlobalHistogramBinarizer(source);
+    return new GlobalHistogramBinarizer(source, bandHeight);
+  }
+
+  /**
+   * Estimates the black point for a band of rows from four rows spread across it, reusing an
+   * earlier estimate if there is one.
+   */
+  private int getBandBlackPoint(int band) throws NotFoundException {
+    LuminanceSource source = getLuminanceSource();
+    int height = source.getHeight();
+    if (bandBlackPoints == null) {
+      bandBlackPoints = new int[(height + bandHeight - 1) / bandHeight];
+    }
+    int blackPoint = bandBlackPoints[band];
+    if (blackPoint == 0) {
+      int width = source.getWidth();
+      initArrays(width);
+      int[] localBuckets = buckets;
+      int top = band * bandHeight;
+      int bottom = Math.min(top + bandHeight, height);
+      int step = Math.max(1, bandHeight / 4);
+      for (int row = top; row < bottom; row += step) {
+        byte[] localLuminances = source.getRow(row, luminances);
+        for (int x = 0; x < width; x++) {
+          localBuckets[(localLuminances[x] & 0xff) >> LUMINANCE_SHIFT]++;
+        }
+      }
+      try {
+        blackPoint = estimateBlackPoint(localBuckets);
+      } catch (NotFoundException nfe) {
+        blackPoint = NO_BLACK_POINT;
+      }
+      bandBlackPoints[band] = blackPoint;
+    }
+    if (blackPoint == NO_BLACK_POINT) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return blackPoint;
   }
 
   private void initArrays(int luminanceSize) {
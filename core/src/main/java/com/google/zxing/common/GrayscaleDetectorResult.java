@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.common;
+
+import com.google.zxing.ResultPoint;
+
+/**
+ * <p>Extends {@link DetectorResult} with how sure the detector is of each module of a grid that
+ * it thresholded itself, as sampled by a {@link GrayscaleGridSampler}.</p>
+ */
+public final class GrayscaleDetectorResult extends DetectorResult {
+
+  private final float[] confidences;
+
+  /**
+   * @param bits sampled grid
+   * @param points points of interest, as for {@link DetectorResult}
+   * @param confidences confidence of each module of the grid, row by row
+   */
+  public GrayscaleDetectorResult(BitMatrix bits, ResultPoint[] points, float[] confidences) {
+    this(bits, points, confidences, false);
+  }
+
+  /**
+   * @param bits sampled grid
+   * @param points points of interest, as for {@link DetectorResult}
+   * @param confidences confidence of each module of the grid, row by row
+   * @param inverted true if the barcode is light on dark, as for {@link DetectorResult}
+   */
+  public GrayscaleDetectorResult(BitMatrix bits, ResultPoint[] points, float[] confidences,
+                                 boolean inverted) {
+    super(bits, points, inverted);
+    this.confidences = confidences;
+  }
+
+  /**
+   * @param x column of the module
+   * @param y row of the module
+   * @return how far the module's luminance was from its threshold, from 0 (right at it, so as
+   *  likely to be wrong as right) to 1 (at least as far as a typical black or white module)
+   */
+  public float getConfidence(int x, int y) {
+    return confidences[y * getBits().getWidth() + x];
+  }
+
+  /**
+   * @return confidence of each module, row by row; see {@link #getConfidence(int, int)}
+   */
+  public float[] getConfidences() {
+    return confidences;
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.common;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+
+/**
+ * <p>Samples a grid of modules straight from the luminance of an image rather than from its
+ * {@link BitMatrix}, so that a detector can threshold each module itself, for example against
+ * the contrast of nearby finder patterns, instead of relying on how the whole image was
+ * binarized.</p>
+ *
+ * <p>Module centers are found like {@link DefaultGridSampler} finds them. Optionally each is
+ * averaged with its eight neighbors, which evens out noise and slight misalignment.</p>
+ */
+public final class GrayscaleGridSampler {
+
+  private final LuminanceSource source;
+  private final boolean averaging;
+  private byte[] luminances;
+
+  /**
+   * @param source image to sample
+   * @param averaging if true, average each module center with the 3x3 pixels around it
+   */
+  public GrayscaleGridSampler(LuminanceSource source, boolean averaging) {
+    this.source = source;
+    this.averaging = averaging;
+  }
+
+  public boolean isAveraging() {
+    return averaging;
+  }
+
+  /**
+   * @param dimensionX width of the grid in modules
+   * @param dimensionY height of the grid in modules
+   * @param transform maps grid coordinates to image coordinates
+   * @return luminance, from 0 (black) to 255 (white), at the center of each module, row by row
+   * @throws NotFoundException if the grid does not fall on the image
+   */
+  public int[] sampleLuminances(int dimensionX,
+                                int dimensionY,
+                                PerspectiveTransform transform) throws NotFoundException {
+    if (dimensionX <= 0 || dimensionY <= 0) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    DefaultGridSampler.checkGridBounds(transform, dimensionX, dimensionY, width, height);
+    if (luminances == null) {
+      luminances = source.getMatrix();
+    }
+    byte[] luminances = this.luminances;
+
+    int maxX = width - 1;
+    int maxY = height - 1;
+    int[] points = new int[2 * dimensionX];
+    int[] result = new int[dimensionX * dimensionY];
+    for (int y = 0; y < dimensionY; y++) {
+      DefaultGridSampler.transformRow(transform, y, maxX, maxY, points);
+      int offset = y * dimensionX;
+      for (int x = 0; x < dimensionX; x++) {
+        int imageX = points[2 * x];
+        int imageY = points[2 * x + 1];
+        result[offset + x] = averaging ?
+            average(luminances, width, maxX, maxY, imageX, imageY) :
+            luminances[imageY * width + imageX] & 0xFF;
+      }
+    }
+    return result;
+  }
+
+  private static int average(byte[] luminances, int width, int maxX, int maxY, int x, int y) {
+    int left = x > 0 ? x - 1 : 0;
+    int right = x < maxX ? x + 1 : maxX;
+    int top = y > 0 ? y - 1 : 0;
+    int bottom = y < maxY ? y + 1 : maxY;
+    int sum = 0;
+    for (int yy = top; yy <= bottom; yy++) {
+      int offset = yy * width;
+      for (int xx = left; xx <= right; xx++) {
+        sum += luminances[offset + xx] & 0xFF;
+      }
+    }
+    return sum / ((right - left + 1) * (bottom - top + 1));
+  }
+
+}
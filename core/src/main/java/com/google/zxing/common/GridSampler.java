@@ -101,6 +101,27 @@ public abstract class GridSampler {
                                        int dimensionY,
                                        PerspectiveTransform transform) throws NotFoundException;
 
+  /**
+   * Like {@link #sampleGrid(BitMatrix, int, int, PerspectiveTransform)}, but takes the sampled
+   * matrix from a pool, so the caller should release it there when done with it. Implementations
+   * that don't support pooling may ignore the pool and allocate the matrix.
+   *
+   * @param image image to sample
+   * @param dimensionX width of {@link BitMatrix} to sample from image
+   * @param dimensionY height of {@link BitMatrix} to sample from image
+   * @param transform maps grid coordinates to image coordinates
+   * @param pool pool to take the result from, or null
+   * @return {@link BitMatrix} representing a grid of points sampled from the image
+   * @throws NotFoundException if image can't be sampled
+   */
+  public BitMatrix sampleGrid(BitMatrix image,
+                              int dimensionX,
+                              int dimensionY,
+                              PerspectiveTransform transform,
+                              BitPool pool) throws NotFoundException {
+    return sampleGrid(image, dimensionX, dimensionY, transform);
+  }
+
   /**
    * <p>Checks a set of points that have been transformed to sample points on an image against
    * the image's dimensions to see if the point are even within the image.</p>
@@ -35,6 +35,15 @@ import com.google.zxing.NotFoundException;
  *
  * This Binarizer is the default for the unit tests and the recommended class for library users.
  *
+ * In lazy mode the block black points are still computed up front, but the returned BitMatrix
+ * only thresholds an 8x8 tile the first time one of its bits is read. Detectors that look at a
+ * fraction of the rows, and grid samplers that only read inside the symbol, then skip most of
+ * the thresholding work.
+ *
+ * Once the block statistics are known, {@link #getBlackMatrix(int)} can cheaply produce variants
+ * of the matrix with all thresholds shifted up or down, which helps with faded or over-inked prints
+ * without converting or scanning the luminance data again.
+ *
  * @author dswitkin@google.com (Daniel Switkin)
  */
 public final class HybridBinarizer extends GlobalHistogramBinarizer {
@@ -47,10 +56,40 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
   private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
   private static final int MIN_DYNAMIC_RANGE = 24;
 
+  private final boolean lazy;
   private BitMatrix matrix;
+  // Block statistics kept around for threshold variants; null if the image was too small
+  private byte[] luminances;
+  private int subWidth;
+  private int subHeight;
+  private int[][] blackPoints;
+  private int[] blockThresholds;
 
   public HybridBinarizer(LuminanceSource source) {
-    super(source);
+    this(source, false);
+  }
+
+  /**
+   * @param source luminance data to binarize
+   * @param lazy if true, {@link #getBlackMatrix()} thresholds each tile on first access
+   */
+  public HybridBinarizer(LuminanceSource source, boolean lazy) {
+    this(source, lazy, 0);
+  }
+
+  /**
+   * @param source luminance data to binarize
+   * @param lazy if true, {@link #getBlackMatrix()} thresholds each tile on first access
+   * @param bandHeight if positive, {@link #getBlackRow(int, BitArray)} estimates one black point
+   *  for each band of this many rows; see {@link GlobalHistogramBinarizer}
+   */
+  public HybridBinarizer(LuminanceSource source, boolean lazy, int bandHeight) {
+    super(source, bandHeight);
+    this.lazy = lazy;
+  }
+
+  public boolean isLazy() {
+    return lazy;
   }
 
   /**
@@ -77,10 +116,20 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         subHeight++;
       }
       int[][] blackPoints = calculateBlackPoints(luminances, subWidth, subHeight, width, height);
+      this.luminances = luminances;
+      this.subWidth = subWidth;
+      this.subHeight = subHeight;
+      this.blackPoints = blackPoints;
 
-      BitMatrix newMatrix = new BitMatrix(width, height);
-      calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, newMatrix);
-      matrix = newMatrix;
+      if (lazy) {
+        BitMatrix newMatrix = acquireBitMatrix(width, height);
+        newMatrix.setTileThresholder(createThresholder(0));
+        matrix = newMatrix;
+      } else {
+        BitMatrix newMatrix = acquireBitMatrix(width, height);
+        calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, newMatrix);
+        matrix = newMatrix;
+      }
     } else {
       // If the image is too small, fall back to the global histogram approach.
       matrix = super.getBlackMatrix();
@@ -88,9 +137,56 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     return matrix;
   }
 
+  /**
+   * Returns a variant of {@link #getBlackMatrix()} in which every block threshold is shifted by
+   * {@code thresholdBias}. The block statistics are computed only once, and each variant is
+   * thresholded lazily, so asking for several variants of one image is cheap.
+   *
+   * @param thresholdBias amount added to each block threshold; positive values turn more pixels
+   *  black (helps faded prints), negative values fewer (helps over-inked prints)
+   * @return the biased matrix, or {@code null} if the image is too small for local thresholding
+   *  and only the global histogram approach applies
+   * @throws NotFoundException if image can't be binarized to make a matrix
+   */
+  public BitMatrix getBlackMatrix(int thresholdBias) throws NotFoundException {
+    BitMatrix unbiased = getBlackMatrix();
+    if (thresholdBias == 0) {
+      return unbiased;
+    }
+    if (blackPoints == null) {
+      return null;
+    }
+    LuminanceSource source = getLuminanceSource();
+    return new BitMatrix(source.getWidth(), source.getHeight(), createThresholder(thresholdBias));
+  }
+
+  @Override
+  public void releaseBlackMatrix(BitMatrix matrix) {
+    if (matrix == this.matrix) {
+      this.matrix = null;
+    }
+    super.releaseBlackMatrix(matrix);
+  }
+
+  private TileThresholder createThresholder(int thresholdBias) {
+    if (blockThresholds == null) {
+      blockThresholds = calculateBlockThresholds(subWidth, subHeight, blackPoints);
+    }
+    int[] thresholds = blockThresholds;
+    if (thresholdBias != 0) {
+      thresholds = new int[blockThresholds.length];
+      for (int i = 0; i < thresholds.length; i++) {
+        thresholds[i] = blockThresholds[i] + thresholdBias;
+      }
+    }
+    LuminanceSource source = getLuminanceSource();
+    return new LazyBlockThresholder(luminances, source.getWidth(), source.getHeight(), subWidth, subHeight,
+        thresholds);
+  }
+
   @Override
   public Binarizer createBinarizer(LuminanceSource source) {
-    return new HybridBinarizer(source);
+    return new HybridBinarizer(source, lazy, getBandHeight());
   }
 
   /**
@@ -117,19 +213,41 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
         if (xoffset > maxXOffset) {
           xoffset = maxXOffset;
         }
-        int left = cap(x, 2, subWidth - 3);
-        int top = cap(y, 2, subHeight - 3);
-        int sum = 0;
-        for (int z = -2; z <= 2; z++) {
-          int[] blackRow = blackPoints[top + z];
-          sum += blackRow[left - 2] + blackRow[left - 1] + blackRow[left] + blackRow[left + 1] + blackRow[left + 2];
-        }
-        int average = sum / 25;
+        int average = averageBlackPoint(blackPoints, x, y, subWidth, subHeight);
         thresholdBlock(luminances, xoffset, yoffset, average, width, matrix);
       }
     }
   }
 
+  /**
+   * Same thresholds as {@link #calculateThresholdForBlock}, but only computed, not applied.
+   *
+   * @return threshold for block (x, y) at index {@code y * subWidth + x}
+   */
+  private static int[] calculateBlockThresholds(int subWidth, int subHeight, int[][] blackPoints) {
+    int[] thresholds = new int[subWidth * subHeight];
+    for (int y = 0; y < subHeight; y++) {
+      for (int x = 0; x < subWidth; x++) {
+        thresholds[y * subWidth + x] = averageBlackPoint(blackPoints, x, y, subWidth, subHeight);
+      }
+    }
+    return thresholds;
+  }
+
+  /**
+   * @return average black point of the 5x5 grid of blocks around block (x, y)
+   */
+  private static int averageBlackPoint(int[][] blackPoints, int x, int y, int subWidth, int subHeight) {
+    int left = cap(x, 2, subWidth - 3);
+    int top = cap(y, 2, subHeight - 3);
+    int sum = 0;
+    for (int z = -2; z <= 2; z++) {
+      int[] blackRow = blackPoints[top + z];
+      sum += blackRow[left - 2] + blackRow[left - 1] + blackRow[left] + blackRow[left + 1] + blackRow[left + 2];
+    }
+    return sum / 25;
+  }
+
   private static int cap(int value, int min, int max) {
     return value < min ? min : value > max ? max : value;
   }
@@ -234,4 +352,72 @@ public final class HybridBinarizer extends GlobalHistogramBinarizer {
     return blackPoints;
   }
 
+  /**
+   * Thresholds the tiles of a lazily created matrix with the precomputed block thresholds.
+   *
+   * The last block in each row and column is shifted so that it ends at the image border, and
+   * so overlaps its neighbour when the image size is not a multiple of the block size. An eager
+   * pass sets a pixel if any block covering it says so, which is the same as comparing against
+   * the largest threshold among those blocks; this is what we do here per pixel.
+   */
+  private static final class LazyBlockThresholder implements TileThresholder {
+
+    private final byte[] luminances;
+    private final int width;
+    private final int height;
+    private final int subWidth;
+    private final int subHeight;
+    private final int[] thresholds;
+
+    LazyBlockThresholder(byte[] luminances,
+                         int width,
+                         int height,
+                         int subWidth,
+                         int subHeight,
+                         int[] thresholds) {
+      this.luminances = luminances;
+      this.width = width;
+      this.height = height;
+      this.subWidth = subWidth;
+      this.subHeight = subHeight;
+      this.thresholds = thresholds;
+    }
+
+    @Override
+    public void thresholdTile(int tileX, int tileY, int[] bits, int rowSize) {
+      int left = tileX << BLOCK_SIZE_POWER;
+      int top = tileY << BLOCK_SIZE_POWER;
+      int right = Math.min(left + BLOCK_SIZE, width);
+      int bottom = Math.min(top + BLOCK_SIZE, height);
+      int lastX = subWidth - 1;
+      int lastY = subHeight - 1;
+      // Pixels from here on are also covered by the shifted last block column / row
+      int sharedX = tileX == lastX ? width : width - BLOCK_SIZE;
+      int sharedY = tileY == lastY ? height : height - BLOCK_SIZE;
+
+      int threshold = thresholds[tileY * subWidth + tileX];
+      for (int y = top; y < bottom; y++) {
+        int offset = y * width;
+        int rowThreshold = threshold;
+        int rowSharedThreshold = Math.max(threshold, thresholds[tileY * subWidth + lastX]);
+        if (y >= sharedY) {
+          rowThreshold = Math.max(rowThreshold, thresholds[lastY * subWidth + tileX]);
+          rowSharedThreshold = Math.max(rowSharedThreshold,
+              Math.max(rowThreshold, thresholds[lastY * subWidth + lastX]));
+        }
+        int tileBits = 0;
+        for (int x = left; x < right; x++) {
+          int pixelThreshold = x >= sharedX ? rowSharedThreshold : rowThreshold;
+          // Comparison needs to be <= so that black == 0 pixels are black even if the threshold is 0.
+          if ((luminances[offset + x] & 0xFF) <= pixelThreshold) {
+            tileBits |= 1 << (x - left);
+          }
+        }
+        // A tile row never straddles two ints since tiles are 8-aligned
+        bits[y * rowSize + (left >> 5)] |= tileBits << (left & 0x1f);
+      }
+    }
+
+  }
+
 }
@@ -25,15 +25,16 @@ package com.google.zxing.common;
  */
 public final class PerspectiveTransform {
 
-  private final float a11;
-  private final float a12;
-  private final float a13;
-  private final float a21;
-  private final float a22;
-  private final float a23;
-  private final float a31;
-  private final float a32;
-  private final float a33;
+  // Package-private so that DefaultGridSampler can step through the transform incrementally
+  final float a11;
+  final float a12;
+  final float a13;
+  final float a21;
+  final float a22;
+  final float a23;
+  final float a31;
+  final float a32;
+  final float a33;
 
   private PerspectiveTransform(float a11, float a21, float a31,
                                float a12, float a22, float a32,
@@ -38,6 +38,19 @@ public final class StringUtils {
       SHIFT_JIS.equalsIgnoreCase(PLATFORM_DEFAULT_ENCODING) ||
       EUC_JP.equalsIgnoreCase(PLATFORM_DEFAULT_ENCODING);
 
+  // What each byte value can be in the encodings that are guessed between, so that bytes past the
+  // ASCII prefix take one lookup rather than a chain of comparisons for each encoding
+  private static final int UTF8_LEAD_2 = 0x01; // 110xxxxx
+  private static final int UTF8_LEAD_3 = 0x02; // 1110xxxx
+  private static final int UTF8_LEAD_4 = 0x04; // 11110xxx
+  private static final int ISO_INVALID = 0x08; // C1 controls
+  private static final int ISO_HIGH_OTHER = 0x10; // upper symbols and signs, not letters
+  private static final int SJIS_INVALID_LEAD = 0x20;
+  private static final int SJIS_KATAKANA = 0x40; // half-width, single byte
+  private static final int SJIS_DOUBLE_LEAD = 0x80;
+  private static final int SJIS_INVALID_TRAIL = 0x100;
+  private static final int[] BYTE_CLASSES = buildByteClasses();
+
   private StringUtils() {}
 
   /**
@@ -54,6 +67,12 @@ public final class StringUtils {
     // For now, merely tries to distinguish ISO-8859-1, UTF-8 and Shift_JIS,
     // which should be by far the most common encodings.
     int length = bytes.length;
+    int start = findFirstNonAscii(bytes);
+    if (start == length) {
+      // The most common case: plain ASCII is valid in all of them, and the heuristics below come
+      // down to this
+      return ASSUME_SHIFT_JIS || length == 0 ? SHIFT_JIS : ISO_8859_1;
+    }
     boolean canBeISO88591 = true;
     boolean canBeShiftJIS = true;
     boolean canBeUTF8 = true;
@@ -79,11 +98,13 @@ public final class StringUtils {
         bytes[1] == (byte) 0xBB &&
         bytes[2] == (byte) 0xBF;
 
-    for (int i = 0;
+    // ASCII bytes before start leave every state as it was to begin with
+    for (int i = start;
          i < length && (canBeISO88591 || canBeShiftJIS || canBeUTF8);
          i++) {
 
       int value = bytes[i] & 0xFF;
+      int byteClass = BYTE_CLASSES[value];
 
       // UTF-8 stuff
       if (canBeUTF8) {
@@ -94,73 +115,55 @@ public final class StringUtils {
             utf8BytesLeft--;
           }
         } else if ((value & 0x80) != 0) {
-          if ((value & 0x40) == 0) {
-            canBeUTF8 = false;
+          if ((byteClass & UTF8_LEAD_2) != 0) {
+            utf8BytesLeft = 1;
+            utf2BytesChars++;
+          } else if ((byteClass & UTF8_LEAD_3) != 0) {
+            utf8BytesLeft = 2;
+            utf3BytesChars++;
+          } else if ((byteClass & UTF8_LEAD_4) != 0) {
+            utf8BytesLeft = 3;
+            utf4BytesChars++;
           } else {
-            utf8BytesLeft++;
-            if ((value & 0x20) == 0) {
-              utf2BytesChars++;
-            } else {
-              utf8BytesLeft++;
-              if ((value & 0x10) == 0) {
-                utf3BytesChars++;
-              } else {
-                utf8BytesLeft++;
-                if ((value & 0x08) == 0) {
-                  utf4BytesChars++;
-                } else {
-                  canBeUTF8 = false;
-                }
-              }
-            }
+            canBeUTF8 = false;
           }
-        } //else {
-          //utf8LowChars++;
-        //}
+        }
       }
 
       // ISO-8859-1 stuff
       if (canBeISO88591) {
-        if (value > 0x7F && value < 0xA0) {
+        if ((byteClass & ISO_INVALID) != 0) {
           canBeISO88591 = false;
-        } else if (value > 0x9F) {
-          if (value < 0xC0 || value == 0xD7 || value == 0xF7) {
-            isoHighOther++;
-          } //else {
-            //isoHighChars++;
-          //}
-        } //else {
-          //isoLowChars++;
-        //}
+        } else if ((byteClass & ISO_HIGH_OTHER) != 0) {
+          isoHighOther++;
+        }
       }
 
       // Shift_JIS stuff
       if (canBeShiftJIS) {
         if (sjisBytesLeft > 0) {
-          if (value < 0x40 || value == 0x7F || value > 0xFC) {
+          if ((byteClass & SJIS_INVALID_TRAIL) != 0) {
             canBeShiftJIS = false;
           } else {
             sjisBytesLeft--;
           }
-        } else if (value == 0x80 || value == 0xA0 || value > 0xEF) {
+        } else if ((byteClass & SJIS_INVALID_LEAD) != 0) {
           canBeShiftJIS = false;
-        } else if (value > 0xA0 && value < 0xE0) {
+        } else if ((byteClass & SJIS_KATAKANA) != 0) {
           sjisKatakanaChars++;
           sjisCurDoubleBytesWordLength = 0;
           sjisCurKatakanaWordLength++;
           if (sjisCurKatakanaWordLength > sjisMaxKatakanaWordLength) {
             sjisMaxKatakanaWordLength = sjisCurKatakanaWordLength;
           }
-        } else if (value > 0x7F) {
+        } else if ((byteClass & SJIS_DOUBLE_LEAD) != 0) {
           sjisBytesLeft++;
-          //sjisDoubleBytesChars++;
           sjisCurKatakanaWordLength = 0;
           sjisCurDoubleBytesWordLength++;
           if (sjisCurDoubleBytesWordLength > sjisMaxDoubleBytesWordLength) {
             sjisMaxDoubleBytesWordLength = sjisCurDoubleBytesWordLength;
           }
         } else {
-          //sjisLowChars++;
           sjisCurKatakanaWordLength = 0;
           sjisCurDoubleBytesWordLength = 0;
         }
@@ -206,4 +209,57 @@ public final class StringUtils {
     return PLATFORM_DEFAULT_ENCODING;
   }
 
+  /**
+   * @return index of the first byte with its high bit set, or the number of bytes if none has
+   */
+  private static int findFirstNonAscii(byte[] bytes) {
+    int length = bytes.length;
+    int i = 0;
+    // Eight bytes a step: the OR of them is negative if any has its high bit set. This sticks to
+    // int arithmetic, which is as fast in JavaScript as on the JVM, unlike long.
+    int end = length - 7;
+    while (i < end &&
+        (bytes[i] | bytes[i + 1] | bytes[i + 2] | bytes[i + 3] |
+         bytes[i + 4] | bytes[i + 5] | bytes[i + 6] | bytes[i + 7]) >= 0) {
+      i += 8;
+    }
+    while (i < length && bytes[i] >= 0) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int[] buildByteClasses() {
+    int[] byteClasses = new int[256];
+    for (int value = 0x80; value < 256; value++) {
+      int byteClass = 0;
+      if ((value & 0xE0) == 0xC0) {
+        byteClass |= UTF8_LEAD_2;
+      } else if ((value & 0xF0) == 0xE0) {
+        byteClass |= UTF8_LEAD_3;
+      } else if ((value & 0xF8) == 0xF0) {
+        byteClass |= UTF8_LEAD_4;
+      }
+      if (value < 0xA0) {
+        byteClass |= ISO_INVALID;
+      } else if (value < 0xC0 || value == 0xD7 || value == 0xF7) {
+        byteClass |= ISO_HIGH_OTHER;
+      }
+      if (value == 0x80 || value == 0xA0 || value > 0xEF) {
+        byteClass |= SJIS_INVALID_LEAD;
+      } else if (value > 0xA0 && value < 0xE0) {
+        byteClass |= SJIS_KATAKANA;
+      } else {
+        byteClass |= SJIS_DOUBLE_LEAD;
+      }
+      byteClasses[value] = byteClass;
+    }
+    for (int value = 0; value < 256; value++) {
+      if (value < 0x40 || value == 0x7F || value > 0xFC) {
+        byteClasses[value] |= SJIS_INVALID_TRAIL;
+      }
+    }
+    return byteClasses;
+  }
+
 }
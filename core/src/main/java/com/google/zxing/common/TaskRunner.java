@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+/**
+ * <p>Runs independent pieces of a decode, which may then be done in parallel. The library has no
+ * threads of its own, since it must also compile to JavaScript; on the JVM an implementation
+ * typically hands the tasks to an {@code ExecutorService} and waits for them. Readers are given
+ * a runner with {@link com.google.zxing.DecodeHintType#TASK_RUNNER}.</p>
+ *
+ * <p>Callers split work into tasks that share nothing they write to, and combine the outcomes in
+ * a fixed order afterwards, so results never depend on how tasks were scheduled.</p>
+ */
+public interface TaskRunner {
+
+  /**
+   * @return number of tasks worth running at once, such as the number of available processors
+   */
+  int getParallelism();
+
+  /**
+   * Runs all the given tasks and returns once every one of them has finished. Everything a task
+   * wrote must be visible to the caller once this returns, as it is after {@code Future.get()} or
+   * {@code Thread.join()}; callers read the outcomes of tasks from plain fields and arrays. If a
+   * task throws, the exception should be rethrown here.
+   *
+   * @param tasks tasks to run, in any order
+   */
+  void runAll(Runnable[] tasks);
+
+}
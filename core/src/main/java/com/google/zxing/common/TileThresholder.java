@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.common;
+
+/**
+ * <p>Fills in the bits of a lazily created {@link BitMatrix} one 8x8 tile at a time. The matrix
+ * calls this the first time any bit of a tile is read, so a binarizer can skip thresholding the
+ * parts of an image a detector never looks at.</p>
+ *
+ * @see HybridBinarizer
+ */
+interface TileThresholder {
+
+  /**
+   * Sets the black bits of one tile. Tile (tileX, tileY) covers pixels
+   * [8 * tileX, 8 * tileX + 8) x [8 * tileY, 8 * tileY + 8), clipped to the matrix.
+   *
+   * @param tileX tile column
+   * @param tileY tile row
+   * @param bits the matrix's row-major bits, to be OR-ed into
+   * @param rowSize number of ints per matrix row
+   */
+  void thresholdTile(int tileX, int tileY, int[] bits, int rowSize);
+
+}
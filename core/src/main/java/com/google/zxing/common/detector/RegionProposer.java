@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.common.detector;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Proposes regions of an image that may hold a 2D barcode, so that a detector can search
+ * those first instead of the whole image. The image is downsampled until each pixel stands for
+ * a cell of 8x8 pixels, which turns a barcode, a dense dark-on-light texture, into a solid blob.
+ * Connected blobs that are large enough, nearly square, mostly filled, and textured rather than
+ * solid in the full image are proposed, largest and squarest first.</p>
+ *
+ * <p>Unlike {@link WhiteRectangleDetector}, which grows one rectangle out from a given point,
+ * this finds every candidate in the image at once.</p>
+ */
+public final class RegionProposer {
+
+  private static final int DOWNSAMPLING_STEPS = 3;
+  // Smallest side of a proposed region, in cells
+  private static final int MIN_CELLS = 3;
+  private static final float MAX_ASPECT_RATIO = 2.0f;
+  // Smallest fraction of a blob's bounding box that the blob fills
+  private static final float MIN_FILL = 0.4f;
+  // Fewest color changes across the middle row of a region for it not to be solid
+  private static final int MIN_TRANSITIONS = 6;
+
+  private final BitMatrix image;
+
+  public RegionProposer(BitMatrix image) {
+    this.image = image;
+  }
+
+  /**
+   * @param maxRegions largest number of regions to propose
+   * @return up to maxRegions regions, best first, each as {left, top, width, height}; the
+   *         regions include a margin of one cell around their blob, within the image
+   */
+  public List<int[]> propose(int maxRegions) {
+    BitMatrix cells = image;
+    int cellSize = 1;
+    for (int step = 0; step < DOWNSAMPLING_STEPS &&
+         cells.getWidth() >= 2 * MIN_CELLS && cells.getHeight() >= 2 * MIN_CELLS; step++) {
+      cells = cells.getDownsampled();
+      cellSize <<= 1;
+    }
+
+    // Label runs of set cells row by row, joining runs that touch runs of the row above
+    int width = cells.getWidth();
+    int height = cells.getHeight();
+    int[] transitions = new int[Math.max(width, image.getWidth())];
+    int[] previousRuns = new int[width + 1];
+    int[] currentRuns = new int[width + 1];
+    int[] previousLabels = new int[width / 2 + 1];
+    int[] currentLabels = new int[width / 2 + 1];
+    int numPrevious = 0;
+    Blobs blobs = new Blobs();
+    for (int y = 0; y < height; y++) {
+      int numTransitions = cells.getRowTransitions(y, transitions);
+      int numCurrent = 0;
+      int above = 0;
+      for (int t = 0; t < numTransitions; t += 2) {
+        int start = transitions[t];
+        int end = t + 1 < numTransitions ? transitions[t + 1] : width;
+        int label = -1;
+        // Runs above that end before this one starts can't touch this or any later run
+        while (above < numPrevious && previousRuns[2 * above + 1] <= start) {
+          above++;
+        }
+        for (int k = above; k < numPrevious && previousRuns[2 * k] < end; k++) {
+          int other = previousLabels[k];
+          label = label < 0 ? blobs.find(other) : blobs.union(label, other);
+        }
+        if (label < 0) {
+          label = blobs.add();
+        }
+        blobs.addRun(label, start, end, y);
+        currentRuns[2 * numCurrent] = start;
+        currentRuns[2 * numCurrent + 1] = end;
+        currentLabels[numCurrent++] = label;
+      }
+      int[] swapRuns = previousRuns;
+      previousRuns = currentRuns;
+      currentRuns = swapRuns;
+      int[] swapLabels = previousLabels;
+      previousLabels = currentLabels;
+      currentLabels = swapLabels;
+      numPrevious = numCurrent;
+    }
+
+    List<Proposal> proposals = new ArrayList<>();
+    for (int blob : blobs.merge()) {
+      int left = blobs.left[blob];
+      int top = blobs.top[blob];
+      int right = blobs.right[blob];
+      int bottom = blobs.bottom[blob];
+      int count = blobs.count[blob];
+      int blobWidth = right - left;
+      int blobHeight = bottom - top;
+      float squareness = (float) Math.min(blobWidth, blobHeight) / Math.max(blobWidth, blobHeight);
+      if (Math.min(blobWidth, blobHeight) < MIN_CELLS ||
+          squareness * MAX_ASPECT_RATIO < 1.0f ||
+          count < MIN_FILL * blobWidth * blobHeight) {
+        continue;
+      }
+
+      // Add a cell of margin, so that the barcode's edges, and some quiet zone, are inside
+      int regionLeft = Math.max(0, (left - 1) * cellSize);
+      int regionTop = Math.max(0, (top - 1) * cellSize);
+      int regionRight = Math.min(image.getWidth(), (right + 1) * cellSize);
+      int regionBottom = Math.min(image.getHeight(), (bottom + 1) * cellSize);
+      if (!isTextured(regionLeft, regionRight, (regionTop + regionBottom) / 2, transitions)) {
+        continue;
+      }
+      int[] region = {regionLeft, regionTop, regionRight - regionLeft, regionBottom - regionTop};
+      proposals.add(new Proposal(region, count * squareness));
+    }
+
+    Collections.sort(proposals, new ScoreComparator());
+    List<int[]> regions = new ArrayList<>();
+    for (int i = 0; i < proposals.size() && i < maxRegions; i++) {
+      regions.add(proposals.get(i).region);
+    }
+    return regions;
+  }
+
+  /**
+   * @return true iff row y of the image changes color often enough between left and right
+   */
+  private boolean isTextured(int left, int right, int y, int[] transitions) {
+    int numTransitions = image.getRowTransitions(y, transitions);
+    int count = 0;
+    for (int i = 0; i < numTransitions; i++) {
+      int x = transitions[i];
+      if (x > left && x < right) {
+        count++;
+      }
+    }
+    return count >= MIN_TRANSITIONS;
+  }
+
+  /**
+   * Connected blobs of cells, as a union-find over labels, each with the bounding box, as
+   * {left, top} inclusive and {right, bottom} exclusive, and number of cells of its runs.
+   */
+  private static final class Blobs {
+    private int size;
+    private int[] parent = new int[16];
+    private int[] left = new int[16];
+    private int[] top = new int[16];
+    private int[] right = new int[16];
+    private int[] bottom = new int[16];
+    private int[] count = new int[16];
+
+    int add() {
+      if (size == parent.length) {
+        int capacity = 2 * size;
+        parent = Arrays.copyOf(parent, capacity);
+        left = Arrays.copyOf(left, capacity);
+        top = Arrays.copyOf(top, capacity);
+        right = Arrays.copyOf(right, capacity);
+        bottom = Arrays.copyOf(bottom, capacity);
+        count = Arrays.copyOf(count, capacity);
+      }
+      parent[size] = size;
+      left[size] = Integer.MAX_VALUE;
+      top[size] = Integer.MAX_VALUE;
+      right[size] = 0;
+      bottom[size] = 0;
+      count[size] = 0;
+      return size++;
+    }
+
+    int find(int label) {
+      while (parent[label] != label) {
+        parent[label] = parent[parent[label]];
+        label = parent[label];
+      }
+      return label;
+    }
+
+    int union(int a, int b) {
+      int rootA = find(a);
+      int rootB = find(b);
+      if (rootA == rootB) {
+        return rootA;
+      }
+      int root = Math.min(rootA, rootB);
+      parent[Math.max(rootA, rootB)] = root;
+      return root;
+    }
+
+    void addRun(int label, int start, int end, int y) {
+      left[label] = Math.min(left[label], start);
+      right[label] = Math.max(right[label], end);
+      top[label] = Math.min(top[label], y);
+      bottom[label] = Math.max(bottom[label], y + 1);
+      count[label] += end - start;
+    }
+
+    /**
+     * Folds every label into its root; roots come before the labels joined to them.
+     *
+     * @return the roots
+     */
+    List<Integer> merge() {
+      List<Integer> roots = new ArrayList<>();
+      for (int label = 0; label < size; label++) {
+        int root = find(label);
+        if (root == label) {
+          roots.add(label);
+        } else {
+          left[root] = Math.min(left[root], left[label]);
+          right[root] = Math.max(right[root], right[label]);
+          top[root] = Math.min(top[root], top[label]);
+          bottom[root] = Math.max(bottom[root], bottom[label]);
+          count[root] += count[label];
+        }
+      }
+      return roots;
+    }
+  }
+
+  private static final class Proposal {
+    private final int[] region;
+    private final float score;
+    private Proposal(int[] region, float score) {
+      this.region = region;
+      this.score = score;
+    }
+  }
+
+  /**
+   * <p>Orders by score, descending.</p>
+   */
+  private static final class ScoreComparator implements Comparator<Proposal>, Serializable {
+    private static final long serialVersionUID = 1L;
+    @Override
+    public int compare(Proposal a, Proposal b) {
+      return Float.compare(b.score, a.score);
+    }
+  }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.common.reedsolomon;
+
+/**
+ * <p>Implements Reed-Solomon decoding over a field of 256 elements, exactly as
+ * {@link ReedSolomonDecoder} does, but in place on the received bytes and with polynomials kept
+ * in scratch arrays that are allocated once, with the decoder. Decoding a block therefore
+ * produces no garbage, which matters when every frame of a video is decoded.</p>
+ *
+ * <p>Codewords known to be unreliable can be passed as erasures: an erasure costs one
+ * error-correction codeword, where an error at an unknown position costs two.</p>
+ *
+ * <p>Polynomials are stored lowest coefficient first, along with their degree. The zero
+ * polynomial has degree 0, as a {@link GenericGFPoly} does.</p>
+ *
+ * <p>This class is not thread-safe. Each thread must allocate its own object.</p>
+ */
+public final class ByteReedSolomonDecoder {
+
+  private static final int FIELD_SIZE = 256;
+
+  private final GenericGF field;
+  private final byte[] multiplyTable;
+  // Polynomials of the Euclidean algorithm, which trade places as it goes
+  private int[] rLast;
+  private int[] r;
+  private int[] tLast;
+  private int[] t;
+  private int[] q;
+  private int[] spare;
+  private int omegaDegree;
+  private final int[] errorLocations;
+  private final int[] errorPositions;
+  private final int[] errorMagnitudes;
+  // Offsets of the rows of the multiplication table for the roots the syndromes are taken at
+  private final int[] rootRows;
+
+  /**
+   * @param field field of 256 elements the code is defined over, such as
+   *  {@link GenericGF#QR_CODE_FIELD_256}
+   */
+  public ByteReedSolomonDecoder(GenericGF field) {
+    if (field.getSize() != FIELD_SIZE) {
+      throw new IllegalArgumentException("Field must have " + FIELD_SIZE + " elements");
+    }
+    this.field = field;
+    this.multiplyTable = field.getMultiplyTable();
+    rLast = new int[FIELD_SIZE];
+    r = new int[FIELD_SIZE];
+    tLast = new int[FIELD_SIZE];
+    t = new int[FIELD_SIZE];
+    q = new int[FIELD_SIZE];
+    spare = new int[FIELD_SIZE];
+    errorLocations = new int[FIELD_SIZE];
+    errorPositions = new int[FIELD_SIZE];
+    errorMagnitudes = new int[FIELD_SIZE];
+    rootRows = new int[FIELD_SIZE];
+  }
+
+  /**
+   * <p>Decodes given set of received codewords, which include both data and error-correction
+   * codewords, and corrects errors in them in-place. Results, and failures, are the same as
+   * those of {@link ReedSolomonDecoder#decode(int[], int)}, except that nothing is corrected
+   * unless all errors could be.</p>
+   *
+   * @param received data and error-correction codewords, at most 255 of them
+   * @param twoS number of error-correction codewords available
+   * @return number of codewords corrected
+   * @throws ReedSolomonException if decoding fails for any reason
+   */
+  public int decode(byte[] received, int twoS) throws ReedSolomonException {
+    return decode(received, twoS, null, 0);
+  }
+
+  /**
+   * <p>Like {@link #decode(byte[], int)}, but also given the positions of codewords that are
+   * likely to be wrong. Up to twoS errors and erasures can be corrected, where each error
+   * counts twice, so up to twoS erasures alone; the fewer error-correction codewords are left
+   * over, the likelier a wrong correction is, rather than a failure.</p>
+   *
+   * @param received data and error-correction codewords, at most 255 of them
+   * @param twoS number of error-correction codewords available
+   * @param erasures indices in received of codewords that are likely to be wrong, all distinct
+   * @param numErasures number of entries of erasures to use
+   * @return number of codewords corrected, which leaves out erasures that turned out to be right
+   * @throws ReedSolomonException if decoding fails for any reason
+   */
+  public int decode(byte[] received, int twoS, int[] erasures, int numErasures)
+      throws ReedSolomonException {
+    int length = received.length;
+    if (length >= FIELD_SIZE || twoS >= FIELD_SIZE) {
+      throw new IllegalArgumentException("Too many codewords for the field");
+    }
+    if (numErasures > twoS) {
+      throw new ReedSolomonException("Too many erasures");
+    }
+
+    // The syndrome polynomial has the evaluation at the i-th root as its coefficient of x^i.
+    // All of them are evaluated in one pass over the codewords, by Horner's rule.
+    int[] syndrome = r;
+    for (int i = 0; i < twoS; i++) {
+      syndrome[i] = 0;
+      rootRows[i] = field.exp(i + field.getGeneratorBase()) << 8;
+    }
+    for (byte codeword : received) {
+      int value = codeword & 0xFF;
+      for (int i = 0; i < twoS; i++) {
+        syndrome[i] = (multiplyTable[rootRows[i] | syndrome[i]] & 0xFF) ^ value;
+      }
+    }
+    int syndromeBits = 0;
+    for (int i = 0; i < twoS; i++) {
+      syndromeBits |= syndrome[i];
+    }
+    if (syndromeBits == 0) {
+      // The most common case: no errors
+      return 0;
+    }
+
+    if (numErasures > 0) {
+      applyErasureLocator(erasures, numErasures, length, twoS);
+    }
+    int numErrors = runEuclideanAlgorithm(twoS, numErasures);
+    findErrorLocations(numErrors);
+    // Erasures are located already; the position of codeword i goes with the power
+    // length - 1 - i of the generator
+    for (int i = 0; i < numErasures; i++) {
+      errorLocations[numErrors + i] = field.exp(length - 1 - erasures[i]);
+    }
+    int numLocations = numErrors + numErasures;
+    // Check every location before correcting any
+    for (int i = 0; i < numLocations; i++) {
+      int position = length - 1 - field.log(errorLocations[i]);
+      if (position < 0) {
+        throw new ReedSolomonException("Bad error location");
+      }
+      errorPositions[i] = position;
+    }
+    for (int i = 0; i < numLocations; i++) {
+      errorMagnitudes[i] = findErrorMagnitude(i, numLocations);
+    }
+    int numCorrected = 0;
+    for (int i = 0; i < numLocations; i++) {
+      if (errorMagnitudes[i] != 0) {
+        received[errorPositions[i]] ^= errorMagnitudes[i];
+        numCorrected++;
+      }
+    }
+    return numCorrected;
+  }
+
+  /**
+   * Multiplies the syndrome, in {@code r}, by the erasure locator, the product of (1 + X x) for
+   * the location X of each erasure, modulo x^twoS. The Euclidean algorithm then finds the
+   * locator of the remaining errors, and an evaluator for errors and erasures together.
+   */
+  private void applyErasureLocator(int[] erasures, int numErasures, int length, int twoS) {
+    int[] erasureLocator = q;
+    erasureLocator[0] = 1;
+    for (int i = 0; i < numErasures; i++) {
+      int position = erasures[i];
+      if (position < 0 || position >= length) {
+        throw new IllegalArgumentException("Erasure out of range: " + position);
+      }
+      int location = field.exp(length - 1 - position);
+      erasureLocator[i + 1] = 0;
+      for (int k = i + 1; k > 0; k--) {
+        erasureLocator[k] ^= multiply(erasureLocator[k - 1], location);
+      }
+    }
+    int[] product = spare;
+    for (int k = 0; k < twoS; k++) {
+      int coefficient = 0;
+      for (int j = Math.min(k, numErasures); j >= 0; j--) {
+        coefficient ^= multiply(erasureLocator[j], r[k - j]);
+      }
+      product[k] = coefficient;
+    }
+    spare = r;
+    r = product;
+  }
+
+  /**
+   * Runs the Euclidean algorithm on x^R and the syndrome, held in {@code r}, until the
+   * remainder is small enough for the number of erasures. Leaves the error locator sigma in
+   * {@code t} and the error evaluator omega in {@code r}.
+   *
+   * @return degree of sigma, the number of errors
+   */
+  private int runEuclideanAlgorithm(int R, int numErasures) throws ReedSolomonException {
+    int rDegree = degree(r, R - 1);
+    // x^R
+    clear(rLast, R);
+    rLast[R] = 1;
+    int rLastDegree = R;
+    // Zero and one
+    tLast[0] = 0;
+    int tLastDegree = 0;
+    t[0] = 1;
+    int tDegree = 0;
+
+    // Run Euclidean algorithm until r's degree is less than R/2, or halfway from the number of
+    // erasures to R
+    while (rDegree >= (R + numErasures) / 2) {
+      // The old rLast becomes r, to be reduced in place; the old tLast is added into t below
+      int[] rLastLast = rLast;
+      int rLastLastDegree = rLastDegree;
+      int[] tLastLast = tLast;
+      int tLastLastDegree = tLastDegree;
+      rLast = r;
+      rLastDegree = rDegree;
+      tLast = t;
+      tLastDegree = tDegree;
+
+      // Divide rLastLast by rLast, with quotient in q and remainder in r
+      if (rLastDegree == 0 && rLast[0] == 0) {
+        // Oops, Euclidean algorithm already terminated?
+        throw new ReedSolomonException("r_{i-1} was zero");
+      }
+      r = rLastLast;
+      rDegree = rLastLastDegree;
+      clear(q, Math.max(0, rDegree - rLastDegree));
+      int qDegree = 0;
+      int dltInverse = field.inverse(rLast[rLastDegree]);
+      while (rDegree >= rLastDegree && !(rDegree == 0 && r[0] == 0)) {
+        int degreeDiff = rDegree - rLastDegree;
+        int scale = multiply(r[rDegree], dltInverse);
+        q[degreeDiff] ^= scale;
+        if (degreeDiff > qDegree) {
+          qDegree = degreeDiff;
+        }
+        for (int k = 0; k <= rLastDegree; k++) {
+          r[k + degreeDiff] ^= multiply(rLast[k], scale);
+        }
+        rDegree = degree(r, rDegree);
+      }
+      qDegree = degree(q, qDegree);
+
+      // t = q * tLast + tLastLast, built in the spare array
+      int[] product = spare;
+      int productDegree = multiplyPolynomials(q, qDegree, tLast, tLastDegree, product);
+      for (int k = 0; k <= tLastLastDegree; k++) {
+        if (k <= productDegree) {
+          product[k] ^= tLastLast[k];
+        } else {
+          product[k] = tLastLast[k];
+        }
+      }
+      spare = tLastLast;
+      t = product;
+      tDegree = degree(t, Math.max(productDegree, tLastLastDegree));
+
+      if (rDegree >= rLastDegree) {
+        throw new IllegalStateException("Division algorithm failed to reduce polynomial?");
+      }
+    }
+
+    int sigmaTildeAtZero = t[0];
+    if (sigmaTildeAtZero == 0) {
+      throw new ReedSolomonException("sigmaTilde(0) was zero");
+    }
+
+    int inverse = field.inverse(sigmaTildeAtZero);
+    scale(t, tDegree, inverse);
+    scale(r, rDegree, inverse);
+    omegaDegree = rDegree;
+    return tDegree;
+  }
+
+  /**
+   * Finds the roots of the error locator sigma, in {@code t}, by Chien's search, and leaves
+   * their inverses in {@code errorLocations}.
+   */
+  private void findErrorLocations(int numErrors) throws ReedSolomonException {
+    int[] errorLocator = t;
+    if (numErrors == 1) { // shortcut
+      errorLocations[0] = errorLocator[1];
+      return;
+    }
+    int e = 0;
+    for (int i = 1; i < FIELD_SIZE && e < numErrors; i++) {
+      if (evaluate(errorLocator, numErrors, i) == 0) {
+        errorLocations[e] = field.inverse(i);
+        e++;
+      }
+    }
+    if (e != numErrors) {
+      throw new ReedSolomonException("Error locator degree does not match number of roots");
+    }
+  }
+
+  /**
+   * Applies Forney's Formula to find the magnitude of the i-th error or erasure, from the error
+   * evaluator omega, in {@code r}.
+   */
+  private int findErrorMagnitude(int i, int numLocations) throws ReedSolomonException {
+    int xiInverse = field.inverse(errorLocations[i]);
+    int denominator = 1;
+    for (int j = 0; j < numLocations; j++) {
+      if (i != j) {
+        int term = multiply(errorLocations[j], xiInverse);
+        denominator = multiply(denominator, GenericGF.addOrSubtract(term, 1));
+      }
+    }
+    if (denominator == 0) {
+      // Only possible if an error was found where an erasure already was
+      throw new ReedSolomonException("Error and erasure at the same location");
+    }
+    int magnitude = multiply(evaluate(r, omegaDegree, xiInverse),
+        field.inverse(denominator));
+    if (field.getGeneratorBase() != 0) {
+      magnitude = multiply(magnitude, xiInverse);
+    }
+    return magnitude;
+  }
+
+  /**
+   * @return product of a and b in the field, looked up in its multiplication table
+   */
+  private int multiply(int a, int b) {
+    return multiplyTable[(a << 8) | b] & 0xFF;
+  }
+
+  /**
+   * @return product of a and b, stored in result, which must not be either of them
+   */
+  private int multiplyPolynomials(int[] a, int aDegree, int[] b, int bDegree, int[] result) {
+    if ((aDegree == 0 && a[0] == 0) || (bDegree == 0 && b[0] == 0)) {
+      result[0] = 0;
+      return 0;
+    }
+    int resultDegree = aDegree + bDegree;
+    clear(result, resultDegree);
+    for (int i = 0; i <= aDegree; i++) {
+      int aCoeff = a[i];
+      for (int j = 0; j <= bDegree; j++) {
+        result[i + j] ^= multiply(aCoeff, b[j]);
+      }
+    }
+    return degree(result, resultDegree);
+  }
+
+  private void scale(int[] poly, int degree, int scalar) {
+    for (int i = 0; i <= degree; i++) {
+      poly[i] = multiply(poly[i], scalar);
+    }
+  }
+
+  private int evaluate(int[] poly, int degree, int a) {
+    int result = poly[degree];
+    for (int i = degree - 1; i >= 0; i--) {
+      result = multiply(a, result) ^ poly[i];
+    }
+    return result;
+  }
+
+  /**
+   * @return degree of the polynomial, whose coefficients above maxDegree are known to be zero
+   */
+  private static int degree(int[] poly, int maxDegree) {
+    int degree = maxDegree;
+    while (degree > 0 && poly[degree] == 0) {
+      degree--;
+    }
+    return degree;
+  }
+
+  private static void clear(int[] poly, int degree) {
+    for (int i = 0; i <= degree; i++) {
+      poly[i] = 0;
+    }
+  }
+
+}
@@ -40,6 +40,9 @@ public final class GenericGF {
 
   private final int[] expTable;
   private final int[] logTable;
+  // Products of all pairs of elements of a field of 256: entry (a << 8) | b is a times b.
+  // Built on first use, since most fields never need it
+  private volatile byte[] multiplyTable;
   private final GenericGFPoly zero;
   private final GenericGFPoly one;
   private final int size;
@@ -81,6 +84,19 @@ public final class GenericGF {
     one = new GenericGFPoly(this, new int[]{1});
   }
 
+  private byte[] buildMultiplyTable() {
+    byte[] table = new byte[size * size];
+    // Products with zero stay zero
+    for (int a = 1; a < size; a++) {
+      int logA = logTable[a];
+      int row = a << 8;
+      for (int b = 1; b < size; b++) {
+        table[row | b] = (byte) expTable[(logA + logTable[b]) % (size - 1)];
+      }
+    }
+    return table;
+  }
+
   GenericGFPoly getZero() {
     return zero;
   }
@@ -144,12 +160,36 @@ public final class GenericGF {
    * @return product of a and b in GF(size)
    */
   int multiply(int a, int b) {
+    byte[] table = multiplyTable;
+    if (table != null) {
+      return table[(a << 8) | b] & 0xFF;
+    }
     if (a == 0 || b == 0) {
       return 0;
     }
     return expTable[(logTable[a] + logTable[b]) % (size - 1)];
   }
 
+  /**
+   * Builds the table on the first call, after which {@link #multiply(int, int)} uses it too.
+   *
+   * @return for a field of 256 elements, the product of a and b at index (a << 8) | b, as an
+   *         unsigned byte; otherwise null
+   */
+  byte[] getMultiplyTable() {
+    byte[] table = multiplyTable;
+    if (table == null && size == 256) {
+      synchronized (this) {
+        table = multiplyTable;
+        if (table == null) {
+          table = buildMultiplyTable();
+          multiplyTable = table;
+        }
+      }
+    }
+    return table;
+  }
+
   public int getSize() {
     return size;
   }
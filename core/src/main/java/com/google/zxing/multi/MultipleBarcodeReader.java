@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.multi;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+
+import java.util.Map;
+
+/**
+ * Implementations of this interface attempt to read several barcodes from one image.
+ *
+ * @see com.google.zxing.Reader
+ */
+public interface MultipleBarcodeReader {
+
+  Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException;
+
+  /**
+   * @param image image that may contain several barcodes
+   * @param hints passed as a {@link java.util.Map} from {@link DecodeHintType} to arbitrary data,
+   *  as for {@link com.google.zxing.Reader#decode(BinaryBitmap, Map)}
+   * @return every barcode decoded, with the points where each was found
+   * @throws NotFoundException if no barcode could be decoded at all
+   */
+  Result[] decodeMultiple(BinaryBitmap image, Map<DecodeHintType,?> hints) throws NotFoundException;
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.multi.qrcode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.detector.MultiDetector;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.detector.FinderPattern;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This implementation can detect and decode multiple QR Codes in an image. The image is
+ * binarized and searched for finder patterns once; every plausible triple of patterns is then
+ * sampled and decoded against the same {@link com.google.zxing.common.BitMatrix}.
+ */
+public final class QRCodeMultiReader extends QRCodeReader implements MultipleBarcodeReader {
+
+  private static final Result[] EMPTY_RESULT_ARRAY = new Result[0];
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image, Map<DecodeHintType,?> hints) throws NotFoundException {
+    if (hints != null && hints.containsKey(DecodeHintType.TEXT_OUTPUT)) {
+      // The texts of several codes can't be told apart in one output
+      Map<DecodeHintType,Object> newHints = new EnumMap<>(DecodeHintType.class);
+      newHints.putAll(hints);
+      newHints.remove(DecodeHintType.TEXT_OUTPUT);
+      hints = newHints;
+    }
+    MultiDetector detector = new MultiDetector(image.getBlackMatrix());
+    FinderPatternInfo[] infos = detector.findMultiFinderPatterns(hints);
+
+    List<Result> results = new ArrayList<>();
+    // Patterns of codes already decoded; a triple using any of them spans more than one code
+    List<FinderPattern> used = new ArrayList<>();
+    for (FinderPatternInfo info : infos) {
+      if (isUsed(info, used)) {
+        continue;
+      }
+      try {
+        DetectorResult detectorResult = detector.processFinderPatternInfo(info);
+        Result result = createResult(decodeSampled(detectorResult, hints), detectorResult.getPoints());
+        results.add(result);
+        used.add(info.getBottomLeft());
+        used.add(info.getTopLeft());
+        used.add(info.getTopRight());
+      } catch (NotFoundException | ChecksumException | FormatException re) {
+        // ignore and continue
+      }
+    }
+    if (results.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return results.toArray(EMPTY_RESULT_ARRAY);
+  }
+
+  private static boolean isUsed(FinderPatternInfo info, List<FinderPattern> used) {
+    for (FinderPattern pattern : used) {
+      if (pattern == info.getBottomLeft() || pattern == info.getTopLeft() || pattern == info.getTopRight()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.multi.qrcode.detector;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.detector.Detector;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+
+import java.util.Map;
+
+/**
+ * <p>Encapsulates logic that can detect one or more QR Codes in an image, even if the QR Code
+ * is rotated or skewed, or partially obscured. Each set of finder patterns it finds is sampled
+ * with {@link #processFinderPatternInfo(FinderPatternInfo)}, against the same image.</p>
+ */
+public final class MultiDetector extends Detector {
+
+  public MultiDetector(BitMatrix image) {
+    super(image);
+  }
+
+  /**
+   * <p>Locates the finder patterns of all QR Codes in the image, without sampling them.</p>
+   *
+   * @param hints optional hints to detector
+   * @return every plausible set of finder patterns, most likely first; see
+   *  {@link MultiFinderPatternFinder#findMulti(Map)}
+   * @throws NotFoundException if no QR Code can be found
+   */
+  public FinderPatternInfo[] findMultiFinderPatterns(Map<DecodeHintType,?> hints) throws NotFoundException {
+    readHints(hints);
+    MultiFinderPatternFinder finder = new MultiFinderPatternFinder(getImage(), getResultPointCallback());
+    return finder.findMulti(hints);
+  }
+
+}
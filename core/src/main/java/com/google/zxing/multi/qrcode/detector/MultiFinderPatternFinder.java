@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.multi.qrcode.detector;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.detector.FinderPattern;
+import com.google.zxing.qrcode.detector.FinderPatternFinder;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>This class attempts to find the finder patterns of all QR Codes in an image. Rather than
+ * stopping once three patterns are confirmed, it scans the whole image, then groups the
+ * patterns it found into every triple that could be the corners of one code: patterns of about
+ * the same module size, which lie at the corners of a right isosceles triangle no smaller than a
+ * version 1 and no larger than a version 40 code.</p>
+ *
+ * <p>A pattern can be part of several triples. It is up to the caller to try them in order and
+ * to skip triples that reuse a pattern of a code already decoded.</p>
+ */
+public final class MultiFinderPatternFinder extends FinderPatternFinder {
+
+  // Centers of the finder patterns of one code are 14 (version 1) to 170 (version 40) modules
+  // apart; leave some room for error in the module size estimates
+  private static final float MIN_MODULES_BETWEEN_CENTERS = 12.0f;
+  private static final float MAX_MODULES_BETWEEN_CENTERS = 180.0f;
+
+  // Module sizes of patterns of one code may differ by this fraction, or by this many pixels
+  private static final float MAX_MODULE_SIZE_DIFF_FRACTION = 0.2f;
+  private static final float MAX_MODULE_SIZE_DIFF = 0.5f;
+
+  // Tolerated relative error of the two sides of the triangle, and of its hypotenuse
+  private static final float MAX_SIDE_DIFF_FRACTION = 0.1f;
+
+  public MultiFinderPatternFinder(BitMatrix image, ResultPointCallback resultPointCallback) {
+    super(image, resultPointCallback);
+  }
+
+  /**
+   * @param hints optional hints, such as {@link DecodeHintType#TRY_HARDER}
+   * @return every plausible triple of finder patterns, in the order they should be tried:
+   *  smallest codes first, since a triple that spans several codes is larger than each of them
+   * @throws NotFoundException if no triple of finder patterns is plausible
+   */
+  public FinderPatternInfo[] findMulti(Map<DecodeHintType,?> hints) throws NotFoundException {
+    findPossibleCenters(hints, false);
+
+    // Every candidate has passed the cross-checks. Most are seen by just one row when rows are
+    // not looked at more closely after a find, so don't ask for more.
+    List<FinderPattern> centers = new ArrayList<>(getPossibleCenters());
+    int size = centers.size();
+    if (size < 3) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    // With patterns sorted by module size, the search for partners of similar size can stop at
+    // the first one that is too large
+    Collections.sort(centers, new ModuleSizeComparator());
+
+    List<Triple> triples = new ArrayList<>();
+    for (int i1 = 0; i1 < size - 2; i1++) {
+      FinderPattern p1 = centers.get(i1);
+      for (int i2 = i1 + 1; i2 < size - 1; i2++) {
+        FinderPattern p2 = centers.get(i2);
+        if (!similarModuleSize(p1, p2)) {
+          break;
+        }
+        // A code's patterns are all dark on light, or all light on dark
+        if (p2.isInverted() != p1.isInverted()) {
+          continue;
+        }
+        for (int i3 = i2 + 1; i3 < size; i3++) {
+          FinderPattern p3 = centers.get(i3);
+          if (!similarModuleSize(p1, p3)) {
+            break;
+          }
+          if (p3.isInverted() != p1.isInverted()) {
+            continue;
+          }
+          FinderPattern[] patterns = {p1, p2, p3};
+          ResultPoint.orderBestPatterns(patterns);
+          float modulesBetweenCenters = modulesBetweenCenters(patterns);
+          if (modulesBetweenCenters > 0.0f) {
+            triples.add(new Triple(new FinderPatternInfo(patterns), modulesBetweenCenters));
+          }
+        }
+      }
+    }
+    if (triples.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    // Stable, so that ties stay in scan order
+    Collections.sort(triples, new TripleComparator());
+    FinderPatternInfo[] result = new FinderPatternInfo[triples.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = triples.get(i).info;
+    }
+    return result;
+  }
+
+  /**
+   * @param smaller pattern with the smaller estimated module size
+   * @param larger pattern with the larger estimated module size
+   */
+  private static boolean similarModuleSize(FinderPattern smaller, FinderPattern larger) {
+    float diff = larger.getEstimatedModuleSize() - smaller.getEstimatedModuleSize();
+    return diff <= MAX_MODULE_SIZE_DIFF || diff <= MAX_MODULE_SIZE_DIFF_FRACTION * smaller.getEstimatedModuleSize();
+  }
+
+  /**
+   * @param patterns bottom left, top left and top right pattern, as ordered by
+   *  {@link ResultPoint#orderBestPatterns(ResultPoint[])}
+   * @return average distance of the top left pattern from the other two, in modules, or -1 if
+   *  the patterns can't be the corners of one QR Code
+   */
+  private static float modulesBetweenCenters(FinderPattern[] patterns) {
+    float bottomLeftToTopLeft = ResultPoint.distance(patterns[0], patterns[1]);
+    float topLeftToTopRight = ResultPoint.distance(patterns[1], patterns[2]);
+    float bottomLeftToTopRight = ResultPoint.distance(patterns[0], patterns[2]);
+    float shorterSide = Math.min(bottomLeftToTopLeft, topLeftToTopRight);
+
+    // The sides at the top left pattern must be about as long as each other ...
+    if (Math.abs(bottomLeftToTopLeft - topLeftToTopRight) > MAX_SIDE_DIFF_FRACTION * shorterSide) {
+      return -1.0f;
+    }
+    // ... and at right angles
+    float hypotenuse = (float) Math.sqrt(bottomLeftToTopLeft * bottomLeftToTopLeft +
+        topLeftToTopRight * topLeftToTopRight);
+    if (Math.abs(bottomLeftToTopRight - hypotenuse) > MAX_SIDE_DIFF_FRACTION * shorterSide) {
+      return -1.0f;
+    }
+
+    float moduleSize = (patterns[0].getEstimatedModuleSize() + patterns[1].getEstimatedModuleSize() +
+        patterns[2].getEstimatedModuleSize()) / 3.0f;
+    float modulesBetweenCenters = (bottomLeftToTopLeft + topLeftToTopRight) / (2.0f * moduleSize);
+    if (modulesBetweenCenters < MIN_MODULES_BETWEEN_CENTERS ||
+        modulesBetweenCenters > MAX_MODULES_BETWEEN_CENTERS) {
+      return -1.0f;
+    }
+    return modulesBetweenCenters;
+  }
+
+  private static final class Triple {
+    private final FinderPatternInfo info;
+    private final float modulesBetweenCenters;
+    private Triple(FinderPatternInfo info, float modulesBetweenCenters) {
+      this.info = info;
+      this.modulesBetweenCenters = modulesBetweenCenters;
+    }
+  }
+
+  /**
+   * <p>Orders by estimated module size, ascending.</p>
+   */
+  private static final class ModuleSizeComparator implements Comparator<FinderPattern>, Serializable {
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+    @Override
+    public int compare(FinderPattern center1, FinderPattern center2) {
+      return Float.compare(center1.getEstimatedModuleSize(), center2.getEstimatedModuleSize());
+    }
+  }
+
+  /**
+   * <p>Orders by distance between pattern centers in modules, ascending.</p>
+   */
+  private static final class TripleComparator implements Comparator<Triple>, Serializable {
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+    @Override
+    public int compare(Triple triple1, Triple triple2) {
+      return Float.compare(triple1.modulesBetweenCenters, triple2.modulesBetweenCenters);
+    }
+  }
+
+}
@@ -27,6 +27,7 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitPool;
 
 import java.util.Arrays;
 import java.util.EnumMap;
@@ -102,9 +103,23 @@ public abstract class OneDReader implements Reader {
    */
   private Result doDecode(BinaryBitmap image,
                           Map<DecodeHintType,?> hints) throws NotFoundException {
+    BitPool bitPool = hints == null ? null : (BitPool) hints.get(DecodeHintType.BIT_POOL);
+    if (bitPool == null) {
+      return doDecode(image, hints, new BitArray(image.getWidth()));
+    }
+    BitArray row = bitPool.acquireArray(image.getWidth());
+    try {
+      return doDecode(image, hints, row);
+    } finally {
+      bitPool.releaseArray(row);
+    }
+  }
+
+  private Result doDecode(BinaryBitmap image,
+                          Map<DecodeHintType,?> hints,
+                          BitArray row) throws NotFoundException {
     int width = image.getWidth();
     int height = image.getHeight();
-    BitArray row = new BitArray(width);
 
     int middle = height >> 1;
     boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
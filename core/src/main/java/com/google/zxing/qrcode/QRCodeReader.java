@@ -23,16 +23,26 @@ import com.google.zxing.DecodeHintType;
 import com.google.zxing.FormatException;
 import com.google.zxing.NotFoundException;
 import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.BitPool;
 import com.google.zxing.common.DecoderResult;
 import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.GrayscaleDetectorResult;
+import com.google.zxing.common.GrayscaleGridSampler;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.common.detector.RegionProposer;
 import com.google.zxing.qrcode.decoder.Decoder;
 import com.google.zxing.qrcode.decoder.QRCodeDecoderMetaData;
+import com.google.zxing.qrcode.detector.DetectionCache;
 import com.google.zxing.qrcode.detector.Detector;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+import com.google.zxing.qrcode.detector.QRCodeLocation;
 
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -64,21 +74,233 @@ public class QRCodeReader implements Reader {
     return decode(image, null);
   }
 
+  /**
+   * Locates and decodes a QR code in an image.
+   *
+   * <p>{@link DecodeHintType#PURE_BARCODE} takes precedence over the hints below, which all
+   * concern detection, since a pure barcode is not detected at all. Otherwise they combine:
+   * {@link DecodeHintType#GRAYSCALE_SAMPLING} applies to whichever way the code is found. A
+   * {@link DecodeHintType#DETECTION_CACHE} is checked first; if what it remembers no longer fits
+   * the frame, or does not decode, the {@link DecodeHintType#REGION_PROPOSALS} are searched, and
+   * then the whole image. Only a code found in the whole image is remembered.</p>
+   *
+   * @return a String representing the content encoded by the QR code
+   * @throws NotFoundException if a QR code cannot be found
+   * @throws FormatException if a QR code cannot be decoded
+   * @throws ChecksumException if error correction fails
+   */
   @Override
   public final Result decode(BinaryBitmap image, Map<DecodeHintType,?> hints)
       throws NotFoundException, ChecksumException, FormatException {
-    DecoderResult decoderResult;
-    ResultPoint[] points;
     if (hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE)) {
       BitMatrix bits = extractPureBits(image.getBlackMatrix());
-      decoderResult = decoder.decode(bits, hints);
-      points = NO_POINTS;
-    } else {
-      DetectorResult detectorResult = new Detector(image.getBlackMatrix()).detect(hints);
-      decoderResult = decoder.decode(detectorResult.getBits(), hints);
-      points = detectorResult.getPoints();
+      return createResult(decoder.decode(bits, hints), NO_POINTS);
     }
 
+    GrayscaleGridSampler sampler = null;
+    DetectionCache detectionCache = null;
+    boolean proposingRegions = false;
+    if (hints != null) {
+      if (hints.containsKey(DecodeHintType.GRAYSCALE_SAMPLING)) {
+        sampler = new GrayscaleGridSampler(image.getLuminanceSource(),
+            hints.containsKey(DecodeHintType.GRAYSCALE_AVERAGING));
+      }
+      detectionCache = (DetectionCache) hints.get(DecodeHintType.DETECTION_CACHE);
+      proposingRegions = hints.get(DecodeHintType.REGION_PROPOSALS) != null;
+    }
+
+    Detector detector = new Detector(image.getBlackMatrix());
+    if (detectionCache != null) {
+      try {
+        DetectorResult detectorResult = detector.detectRemembered(hints, sampler);
+        if (detectorResult != null) {
+          return createResult(decodeSampled(detectorResult, hints), detectorResult.getPoints());
+        }
+      } catch (NotFoundException | ChecksumException | FormatException e) {
+        // The code has moved or changed after all; forget it, and search this frame from scratch
+        detectionCache.invalidate();
+      }
+    }
+    if (proposingRegions) {
+      return decodeProposedRegions(image, detector, sampler, hints);
+    }
+    return decodeFromScratch(detector, detectionCache, sampler, hints);
+  }
+
+  /**
+   * Locates a QR code in an image without decoding it, for example to outline it in every frame
+   * of a video and decode only those frames in which one was located.
+   *
+   * @param hints decode hints, or {@code null}; {@link DecodeHintType#QR_ROW_BUDGET} bounds the
+   *  cost of the search
+   * @return {@link QRCodeLocation} describing where the QR code is
+   * @throws NotFoundException if a QR code cannot be found
+   * @throws FormatException if the finder patterns are too far apart for any version
+   * @see Detector#locate(Map)
+   */
+  public final QRCodeLocation locate(BinaryBitmap image, Map<DecodeHintType,?> hints)
+      throws NotFoundException, FormatException {
+    return new Detector(image.getBlackMatrix()).locate(hints);
+  }
+
+  /**
+   * Detects and decodes without checking a {@link DetectionCache} first, since the frame has been
+   * counted against it already. What is detected replaces the remembered detection, unless it
+   * does not decode, in which case nothing is remembered.
+   */
+  private Result decodeFromScratch(Detector detector,
+                                   DetectionCache detectionCache,
+                                   GrayscaleGridSampler sampler,
+                                   Map<DecodeHintType,?> hints)
+      throws NotFoundException, ChecksumException, FormatException {
+    try {
+      DetectorResult detectorResult = detector.detectFromScratch(hints, sampler);
+      return createResult(decodeSampled(detectorResult, hints), detectorResult.getPoints());
+    } catch (NotFoundException | ChecksumException | FormatException e) {
+      if (detectionCache != null) {
+        detectionCache.invalidate();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Detects and decodes in each of the regions proposed for the image in turn, and then, if none
+   * holds a QR code, in the whole image. Only a detection in the whole image is remembered by a
+   * {@link DetectionCache}, since one in a region is relative to that region.
+   */
+  private Result decodeProposedRegions(BinaryBitmap image,
+                                       Detector detector,
+                                       GrayscaleGridSampler sampler,
+                                       Map<DecodeHintType,?> hints)
+      throws NotFoundException, ChecksumException, FormatException {
+    BitMatrix matrix = image.getBlackMatrix();
+    int maxRegions = (Integer) hints.get(DecodeHintType.REGION_PROPOSALS);
+    BitPool bitPool = (BitPool) hints.get(DecodeHintType.BIT_POOL);
+    Map<DecodeHintType,?> regionHints = hints;
+    if (hints.containsKey(DecodeHintType.DETECTION_CACHE)) {
+      Map<DecodeHintType,Object> copy = new EnumMap<>(DecodeHintType.class);
+      copy.putAll(hints);
+      copy.remove(DecodeHintType.DETECTION_CACHE);
+      regionHints = copy;
+    }
+    // Regions are sampled from the luminance too, if the source can be cropped to them
+    boolean croppingLuminance = sampler != null && image.isCropSupported();
+    for (int[] region : new RegionProposer(matrix).propose(maxRegions)) {
+      BitMatrix crop = bitPool == null ? new BitMatrix(region[2], region[3]) :
+          bitPool.acquireMatrix(region[2], region[3]);
+      try {
+        matrix.getRegion(region[0], region[1], crop);
+        GrayscaleGridSampler regionSampler = croppingLuminance ?
+            new GrayscaleGridSampler(
+                image.getLuminanceSource().crop(region[0], region[1], region[2], region[3]),
+                sampler.isAveraging()) :
+            null;
+        DetectorResult detectorResult =
+            new Detector(crop).detectFromScratch(regionHints, regionSampler);
+        DecoderResult decoderResult = decodeSampled(detectorResult, hints);
+        ResultPoint[] points = detectorResult.getPoints();
+        ResultPoint[] imagePoints = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+          imagePoints[i] = new ResultPoint(points[i].getX() + region[0], points[i].getY() + region[1]);
+        }
+        return createResult(decoderResult, imagePoints);
+      } catch (NotFoundException | ChecksumException | FormatException e) {
+        // try the next region
+      } finally {
+        if (bitPool != null) {
+          bitPool.releaseMatrix(crop);
+        }
+      }
+    }
+    return decodeFromScratch(detector, (DetectionCache) hints.get(DecodeHintType.DETECTION_CACHE),
+        sampler, hints);
+  }
+
+  /**
+   * Decodes a grid sampled by a {@link Detector}, in the polarity it was detected in, and with
+   * the confidence in each module if it was thresholded by the detector itself, then gives it
+   * back to the {@link DecodeHintType#BIT_POOL} it was taken from, if any.
+   */
+  protected final DecoderResult decodeSampled(DetectorResult detectorResult, Map<DecodeHintType,?> hints)
+      throws ChecksumException, FormatException {
+    BitMatrix bits = detectorResult.getBits();
+    float[] confidences = detectorResult instanceof GrayscaleDetectorResult ?
+        ((GrayscaleDetectorResult) detectorResult).getConfidences() : null;
+    try {
+      return decoder.decode(bits, detectorResult.isInverted(), confidences, hints);
+    } finally {
+      BitPool bitPool = hints == null ? null : (BitPool) hints.get(DecodeHintType.BIT_POOL);
+      if (bitPool != null) {
+        bitPool.releaseMatrix(bits);
+      }
+    }
+  }
+
+  /**
+   * Locates and decodes a QR code, retrying with threshold variants of the same binarization
+   * when the first attempt fails to decode. Finder patterns are only searched for in the unbiased
+   * matrix; the variants reuse their locations and redo just alignment, sampling and decoding.
+   * This recovers faded or over-inked prints without binarizing the image again from scratch.
+   *
+   * @param binarizer binarizer of the image; its block statistics are shared by all variants
+   * @param hints decode hints, or {@code null}
+   * @param thresholdBiases biases to try, in order, after the unbiased matrix fails;
+   *  see {@link HybridBinarizer#getBlackMatrix(int)}
+   * @return a String representing the content encoded by the QR code
+   * @throws NotFoundException if a QR code cannot be found
+   * @throws FormatException if a QR code cannot be decoded
+   * @throws ChecksumException if error correction fails
+   */
+  public final Result decodeWithThresholdVariants(HybridBinarizer binarizer,
+                                                  Map<DecodeHintType,?> hints,
+                                                  int... thresholdBiases)
+      throws NotFoundException, ChecksumException, FormatException {
+    Detector detector = new Detector(binarizer.getBlackMatrix());
+    FinderPatternInfo info = detector.findFinderPatterns(hints);
+
+    ReaderException firstException;
+    try {
+      DetectorResult detectorResult = detector.processFinderPatternInfo(info);
+      return createResult(decodeSampled(detectorResult, hints), detectorResult.getPoints());
+    } catch (NotFoundException | ChecksumException | FormatException e) {
+      firstException = e;
+    }
+
+    for (int thresholdBias : thresholdBiases) {
+      if (thresholdBias == 0) {
+        continue;
+      }
+      BitMatrix variant = binarizer.getBlackMatrix(thresholdBias);
+      if (variant == null) {
+        // Too small for local thresholding; there are no variants to try
+        break;
+      }
+      try {
+        // Sample the variant's grid from the same pool that decodeSampled gives it back to
+        DetectorResult detectorResult = new Detector(variant).processFinderPatternInfo(info, hints);
+        return createResult(decodeSampled(detectorResult, hints), detectorResult.getPoints());
+      } catch (NotFoundException | ChecksumException | FormatException e) {
+        // try next variant
+      }
+    }
+
+    // Report what went wrong with the unbiased matrix
+    if (firstException instanceof ChecksumException) {
+      throw (ChecksumException) firstException;
+    }
+    if (firstException instanceof FormatException) {
+      throw (FormatException) firstException;
+    }
+    throw (NotFoundException) firstException;
+  }
+
+  /**
+   * @param decoderResult decoded contents of a code
+   * @param points points where the code was detected; reordered if the code was mirrored
+   * @return {@link Result} with the contents and metadata of the code
+   */
+  protected static Result createResult(DecoderResult decoderResult, ResultPoint[] points) {
     // If the code was mirrored: swap the bottom-left and the top-right points.
     if (decoderResult.getOther() instanceof QRCodeDecoderMetaData) {
       ((QRCodeDecoderMetaData) decoderResult.getOther()).applyMirroredCorrection(points);
@@ -25,20 +25,34 @@ import com.google.zxing.common.BitMatrix;
 final class BitMatrixParser {
 
   private final BitMatrix bitMatrix;
+  private final boolean inverted;
   private Version parsedVersion;
   private FormatInformation parsedFormatInfo;
   private boolean mirror;
+  // Whether the matrix has been mirrored by mirror(), an odd number of times
+  private boolean transposed;
 
   /**
    * @param bitMatrix {@link BitMatrix} to parse
    * @throws FormatException if dimension is not >= 21 and 1 mod 4
    */
   BitMatrixParser(BitMatrix bitMatrix) throws FormatException {
+    this(bitMatrix, false);
+  }
+
+  /**
+   * @param bitMatrix {@link BitMatrix} to parse
+   * @param inverted true if the code is light on dark, so that its modules are read as set where
+   *  the matrix is not
+   * @throws FormatException if dimension is not >= 21 and 1 mod 4
+   */
+  BitMatrixParser(BitMatrix bitMatrix, boolean inverted) throws FormatException {
     int dimension = bitMatrix.getHeight();
     if (dimension < 21 || (dimension & 0x03) != 1) {
       throw FormatException.getFormatInstance();
     }
     this.bitMatrix = bitMatrix;
+    this.inverted = inverted;
   }
 
   /**
@@ -138,7 +152,7 @@ final class BitMatrixParser {
   }
 
   private int copyBit(int i, int j, int versionBits) {
-    boolean bit = mirror ? bitMatrix.get(j, i) : bitMatrix.get(i, j);
+    boolean bit = (mirror ? bitMatrix.get(j, i) : bitMatrix.get(i, j)) != inverted;
     return bit ? (versionBits << 1) | 0x1 : versionBits << 1;
   }
 
@@ -148,58 +162,58 @@ final class BitMatrixParser {
    * QR Code.</p>
    *
    * @return bytes encoded within the QR Code
-   * @throws FormatException if the exact number of bytes expected is not read
+   * @throws FormatException if the format or version information cannot be read
    */
   byte[] readCodewords() throws FormatException {
+    return readCodewords(null, null);
+  }
+
+  /**
+   * <p>Like {@link #readCodewords()}, but also works out how sure the reading of each
+   * codeword is: as sure as that of its least sure module.</p>
+   *
+   * @param moduleConfidences confidence in each module of the matrix as it was sampled, row by
+   *  row, or null if not known
+   * @param codewordConfidences array to store the confidence in each codeword in, or null
+   * @return bytes encoded within the QR Code
+   * @throws FormatException if the format or version information cannot be read
+   */
+  byte[] readCodewords(float[] moduleConfidences, float[] codewordConfidences)
+      throws FormatException {
 
     FormatInformation formatInfo = readFormatInformation();
     Version version = readVersion();
 
-    // Get the data mask for the format used in this QR Code. This will exclude
-    // some bits from reading as we wind through the bit matrix.
+    // Get the data mask for the format used in this QR Code and take it off the whole matrix
     DataMask dataMask = DataMask.values()[formatInfo.getDataMask()];
     int dimension = bitMatrix.getHeight();
     dataMask.unmaskBitMatrix(bitMatrix, dimension);
 
-    BitMatrix functionPattern = version.buildFunctionPattern();
-
-    boolean readingUp = true;
+    // The version says where each bit of each codeword is, so just gather them
+    int[] modules = version.getCodewordModules();
     byte[] result = new byte[version.getTotalCodewords()];
-    int resultOffset = 0;
-    int currentByte = 0;
-    int bitsRead = 0;
-    // Read columns in pairs, from right to left
-    for (int j = dimension - 1; j > 0; j -= 2) {
-      if (j == 6) {
-        // Skip whole column with vertical alignment pattern;
-        // saves time and makes the other code proceed more cleanly
-        j--;
-      }
-      // Read alternatingly from bottom to top then top to bottom
-      for (int count = 0; count < dimension; count++) {
-        int i = readingUp ? dimension - 1 - count : count;
-        for (int col = 0; col < 2; col++) {
-          // Ignore bits covered by the function pattern
-          if (!functionPattern.get(j - col, i)) {
-            // Read a bit
-            bitsRead++;
-            currentByte <<= 1;
-            if (bitMatrix.get(j - col, i)) {
-              currentByte |= 1;
-            }
-            // If we've made a whole byte, save it off
-            if (bitsRead == 8) {
-              result[resultOffset++] = (byte) currentByte;
-              bitsRead = 0;
-              currentByte = 0;
-            }
-          }
+    boolean trackConfidence = moduleConfidences != null && codewordConfidences != null;
+    int moduleOffset = 0;
+    for (int resultOffset = 0; resultOffset < result.length; resultOffset++) {
+      int currentByte = 0;
+      float currentConfidence = Float.POSITIVE_INFINITY;
+      for (int bit = 0; bit < 8; bit++) {
+        int module = modules[moduleOffset++];
+        int x = module & 0xff;
+        int y = module >>> 8;
+        currentByte <<= 1;
+        if (bitMatrix.get(x, y) != inverted) {
+          currentByte |= 1;
+        }
+        if (trackConfidence) {
+          currentConfidence = Math.min(currentConfidence,
+              transposed ? moduleConfidences[x * dimension + y] : moduleConfidences[y * dimension + x]);
         }
       }
-      readingUp ^= true; // readingUp = !readingUp; // switch directions
-    }
-    if (resultOffset != version.getTotalCodewords()) {
-      throw FormatException.getFormatInstance();
+      result[resultOffset] = (byte) currentByte;
+      if (trackConfidence) {
+        codewordConfidences[resultOffset] = currentConfidence;
+      }
     }
     return result;
   }
@@ -216,6 +230,39 @@ final class BitMatrixParser {
     dataMask.unmaskBitMatrix(bitMatrix, dimension);
   }
 
+  /**
+   * <p>Reads the format information both as it is and mirrored, and settles on the orientation in
+   * which it is closer to valid format information: as it is if both are as close, or neither is
+   * valid. If that is mirrored, the version is read mirrored too and the matrix is mirrored, ready
+   * for {@link #readCodewords()}.</p>
+   *
+   * @return true if the QR Code was taken to be mirrored
+   * @throws FormatException if the code was taken to be mirrored but its version cannot be read
+   */
+  boolean readOrientation() throws FormatException {
+    int difference = readFormatInformationDifference(false);
+    if (difference > 0 && readFormatInformationDifference(true) < difference) {
+      readVersion();
+      mirror();
+      return true;
+    }
+    setMirror(false);
+    return false;
+  }
+
+  /**
+   * @return number of bits in which the format information read as it is or mirrored differs from
+   *  valid format information, or {@link Integer#MAX_VALUE} if it is not close to any
+   */
+  private int readFormatInformationDifference(boolean mirrored) {
+    setMirror(mirrored);
+    try {
+      return readFormatInformation().getBitsDifference();
+    } catch (FormatException ignored) {
+      return Integer.MAX_VALUE;
+    }
+  }
+
   /**
    * Prepare the parser for a mirrored operation.
    * This flag has effect only on the {@link #readFormatInformation()} and the
@@ -232,6 +279,7 @@ final class BitMatrixParser {
 
   /** Mirror the bit matrix in order to attempt a second reading. */
   void mirror() {
+    transposed = !transposed;
     for (int x = 0; x < bitMatrix.getWidth(); x++) {
       for (int y = x + 1; y < bitMatrix.getHeight(); y++) {
         if (bitMatrix.get(x, y) != bitMatrix.get(y, x)) {
@@ -27,10 +27,12 @@ final class DataBlock {
 
   private final int numDataCodewords;
   private final byte[] codewords;
+  private final float[] confidences;
 
-  private DataBlock(int numDataCodewords, byte[] codewords) {
+  private DataBlock(int numDataCodewords, byte[] codewords, float[] confidences) {
     this.numDataCodewords = numDataCodewords;
     this.codewords = codewords;
+    this.confidences = confidences;
   }
 
   /**
@@ -47,6 +49,24 @@ final class DataBlock {
   static DataBlock[] getDataBlocks(byte[] rawCodewords,
                                    Version version,
                                    ErrorCorrectionLevel ecLevel) {
+    return getDataBlocks(rawCodewords, null, version, ecLevel);
+  }
+
+  /**
+   * <p>Like {@link #getDataBlocks(byte[], Version, ErrorCorrectionLevel)}, but separates the
+   * confidence in each codeword along with it.</p>
+   *
+   * @param rawCodewords bytes as read directly from the QR Code
+   * @param rawConfidences confidence in each of those bytes, or null if not known
+   * @param version version of the QR Code
+   * @param ecLevel error-correction level of the QR Code
+   * @return DataBlocks containing original bytes, "de-interleaved" from representation in the
+   *         QR Code
+   */
+  static DataBlock[] getDataBlocks(byte[] rawCodewords,
+                                   float[] rawConfidences,
+                                   Version version,
+                                   ErrorCorrectionLevel ecLevel) {
 
     if (rawCodewords.length != version.getTotalCodewords()) {
       throw new IllegalArgumentException();
@@ -70,7 +90,9 @@ final class DataBlock {
       for (int i = 0; i < ecBlock.getCount(); i++) {
         int numDataCodewords = ecBlock.getDataCodewords();
         int numBlockCodewords = ecBlocks.getECCodewordsPerBlock() + numDataCodewords;
-        result[numResultBlocks++] = new DataBlock(numDataCodewords, new byte[numBlockCodewords]);
+        float[] confidences = rawConfidences == null ? null : new float[numBlockCodewords];
+        result[numResultBlocks++] =
+            new DataBlock(numDataCodewords, new byte[numBlockCodewords], confidences);
       }
     }
 
@@ -93,24 +115,32 @@ final class DataBlock {
     int rawCodewordsOffset = 0;
     for (int i = 0; i < shorterBlocksNumDataCodewords; i++) {
       for (int j = 0; j < numResultBlocks; j++) {
-        result[j].codewords[i] = rawCodewords[rawCodewordsOffset++];
+        result[j].copyCodeword(i, rawCodewords, rawConfidences, rawCodewordsOffset++);
       }
     }
     // Fill out the last data block in the longer ones
     for (int j = longerBlocksStartAt; j < numResultBlocks; j++) {
-      result[j].codewords[shorterBlocksNumDataCodewords] = rawCodewords[rawCodewordsOffset++];
+      result[j].copyCodeword(shorterBlocksNumDataCodewords, rawCodewords, rawConfidences,
+          rawCodewordsOffset++);
     }
     // Now add in error correction blocks
     int max = result[0].codewords.length;
     for (int i = shorterBlocksNumDataCodewords; i < max; i++) {
       for (int j = 0; j < numResultBlocks; j++) {
         int iOffset = j < longerBlocksStartAt ? i : i + 1;
-        result[j].codewords[iOffset] = rawCodewords[rawCodewordsOffset++];
+        result[j].copyCodeword(iOffset, rawCodewords, rawConfidences, rawCodewordsOffset++);
       }
     }
     return result;
   }
 
+  private void copyCodeword(int index, byte[] rawCodewords, float[] rawConfidences, int rawIndex) {
+    codewords[index] = rawCodewords[rawIndex];
+    if (rawConfidences != null) {
+      confidences[index] = rawConfidences[rawIndex];
+    }
+  }
+
   int getNumDataCodewords() {
     return numDataCodewords;
   }
@@ -119,4 +149,11 @@ final class DataBlock {
     return codewords;
   }
 
+  /**
+   * @return confidence in each codeword, or null if not known
+   */
+  float[] getConfidences() {
+    return confidences;
+  }
+
 }
@@ -18,6 +18,8 @@ package com.google.zxing.qrcode.decoder;
 
 import com.google.zxing.common.BitMatrix;
 
+import java.util.Arrays;
+
 /**
  * <p>Encapsulates data masks for the data bits in a QR code, per ISO 18004:2006 6.8. Implementations
  * of this class can un-mask a raw BitMatrix. For simplicity, they will unmask the entire BitMatrix,
@@ -119,6 +121,13 @@ enum DataMask {
 
   // End of enum constants.
 
+  // Largest QR Code dimension, that of version 40
+  private static final int MAX_DIMENSION = 177;
+
+  // The mask over a whole symbol of each version, built when first needed. Once built a matrix is
+  // never modified, and the array is replaced rather than updated, so they can be shared by
+  // decoders running on different threads; at worst two of them build the same matrix.
+  private volatile BitMatrix[] maskMatrices = new BitMatrix[40];
 
   /**
    * <p>Implementations of this method reverse the data masking process applied to a QR Code and
@@ -128,13 +137,43 @@ enum DataMask {
    * @param dimension dimension of QR Code, represented by bits, being unmasked
    */
   final void unmaskBitMatrix(BitMatrix bits, int dimension) {
-    for (int i = 0; i < dimension; i++) {
-      for (int j = 0; j < dimension; j++) {
-        if (isMasked(i, j)) {
-          bits.flip(j, i);
+    if (dimension < 21 || dimension > MAX_DIMENSION || (dimension & 0x03) != 1 ||
+        bits.getWidth() != dimension || bits.getHeight() != dimension) {
+      for (int i = 0; i < dimension; i++) {
+        for (int j = 0; j < dimension; j++) {
+          if (isMasked(i, j)) {
+            bits.flip(j, i);
+          }
+        }
+      }
+      return;
+    }
+    bits.xor(getMaskMatrix(dimension));
+  }
+
+  /**
+   * @param dimension dimension of a QR Code of some version
+   * @return matrix with the bits set that this mask flips in a QR Code of that dimension; must not
+   *  be modified
+   */
+  private BitMatrix getMaskMatrix(int dimension) {
+    int index = (dimension - 21) / 4;
+    BitMatrix[] matrices = maskMatrices;
+    BitMatrix matrix = matrices[index];
+    if (matrix == null) {
+      matrix = new BitMatrix(dimension);
+      for (int i = 0; i < dimension; i++) {
+        for (int j = 0; j < dimension; j++) {
+          if (isMasked(i, j)) {
+            matrix.set(j, i);
+          }
         }
       }
+      matrices = Arrays.copyOf(matrices, matrices.length);
+      matrices[index] = matrix;
+      maskMatrices = matrices;
     }
+    return matrix;
   }
 
   abstract boolean isMasked(int i, int j);
@@ -23,9 +23,9 @@ import com.google.zxing.common.CharacterSetECI;
 import com.google.zxing.common.DecoderResult;
 import com.google.zxing.common.StringUtils;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -46,16 +46,67 @@ final class DecodedBitStreamParser {
       "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:".toCharArray();
   private static final int GB2312_SUBSET = 1;
 
+  // Stands in for the text when only the bytes are wanted; segments check for it so as not to
+  // decode characters at all
+  private static final Appendable NO_TEXT = new Appendable() {
+    @Override
+    public Appendable append(CharSequence csq) {
+      return this;
+    }
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+      return this;
+    }
+    @Override
+    public Appendable append(char c) {
+      return this;
+    }
+  };
+
   private DecodedBitStreamParser() {
   }
 
+  /**
+   * <p>Decodes the segments of a QR Code. The text goes to the {@link Appendable} of
+   * {@link DecodeHintType#TEXT_OUTPUT} if given, once the whole bit stream is known to be well
+   * formed, and is left out with {@link DecodeHintType#RAW_BYTES_ONLY}; otherwise it is collected
+   * into the text of the result.</p>
+   *
+   * @throws IllegalStateException if the text cannot be written to the given {@link Appendable}
+   */
   static DecoderResult decode(byte[] bytes,
                               Version version,
                               ErrorCorrectionLevel ecLevel,
                               Map<DecodeHintType,?> hints) throws FormatException {
+    if (hints != null && hints.containsKey(DecodeHintType.RAW_BYTES_ONLY)) {
+      return decode(bytes, version, ecLevel, NO_TEXT, false, hints);
+    }
+    Appendable output = hints == null ? null : (Appendable) hints.get(DecodeHintType.TEXT_OUTPUT);
+    if (output == null) {
+      // Roughly one character per byte, unless the payload is mostly digits
+      return decode(bytes, version, ecLevel, new StringBuilder(bytes.length), true, hints);
+    }
+    // A stream found to be malformed partway through may still be read another way, so check all
+    // of it before writing any text where it can't be taken back
+    DecoderResult result = decode(bytes, version, ecLevel, NO_TEXT, false, hints);
+    decode(bytes, version, ecLevel, output, false, hints);
+    return result;
+  }
+
+  /**
+   * Decodes the segments of a QR Code, writing the text to result.
+   *
+   * @param keepText whether result is a {@link StringBuilder} whose text the returned
+   *  {@link DecoderResult} should have
+   */
+  private static DecoderResult decode(byte[] bytes,
+                                      Version version,
+                                      ErrorCorrectionLevel ecLevel,
+                                      Appendable result,
+                                      boolean keepText,
+                                      Map<DecodeHintType,?> hints) throws FormatException {
     BitSource bits = new BitSource(bytes);
-    StringBuilder result = new StringBuilder(50);
-    List<byte[]> byteSegments = new ArrayList<>(1);
+    List<byte[]> byteSegments = null;
     int symbolSequence = -1;
     int parityData = -1;
     
@@ -108,6 +159,9 @@ final class DecodedBitStreamParser {
               } else if (mode == Mode.ALPHANUMERIC) {
                 decodeAlphanumericSegment(bits, result, count, fc1InEffect);
               } else if (mode == Mode.BYTE) {
+                if (byteSegments == null) {
+                  byteSegments = new ArrayList<>(1);
+                }
                 decodeByteSegment(bits, result, count, currentCharacterSetECI, byteSegments, hints);
               } else if (mode == Mode.KANJI) {
                 decodeKanjiSegment(bits, result, count);
@@ -121,11 +175,14 @@ final class DecodedBitStreamParser {
     } catch (IllegalArgumentException iae) {
       // from readBits() calls
       throw FormatException.getFormatInstance();
+    } catch (IOException ioe) {
+      // from the caller's Appendable
+      throw new IllegalStateException(ioe);
     }
 
     return new DecoderResult(bytes,
-                             result.toString(),
-                             byteSegments.isEmpty() ? null : byteSegments,
+                             keepText ? result.toString() : null,
+                             byteSegments,
                              ecLevel == null ? null : ecLevel.toString(),
                              symbolSequence,
                              parityData);
@@ -135,8 +192,8 @@ final class DecodedBitStreamParser {
    * See specification GBT 18284-2000
    */
   private static void decodeHanziSegment(BitSource bits,
-                                         StringBuilder result,
-                                         int count) throws FormatException {
+                                         Appendable result,
+                                         int count) throws FormatException, IOException {
     // Don't crash trying to read more bits than we have available.
     if (count * 13 > bits.available()) {
       throw FormatException.getFormatInstance();
@@ -163,6 +220,9 @@ final class DecodedBitStreamParser {
       count--;
     }
 
+    if (result == NO_TEXT) {
+      return;
+    }
     try {
       result.append(new String(buffer, StringUtils.GB2312));
     } catch (UnsupportedEncodingException ignored) {
@@ -171,8 +231,8 @@ final class DecodedBitStreamParser {
   }
 
   private static void decodeKanjiSegment(BitSource bits,
-                                         StringBuilder result,
-                                         int count) throws FormatException {
+                                         Appendable result,
+                                         int count) throws FormatException, IOException {
     // Don't crash trying to read more bits than we have available.
     if (count * 13 > bits.available()) {
       throw FormatException.getFormatInstance();
@@ -198,6 +258,9 @@ final class DecodedBitStreamParser {
       offset += 2;
       count--;
     }
+    if (result == NO_TEXT) {
+      return;
+    }
     // Shift_JIS may not be supported in some environments:
     try {
       result.append(new String(buffer, StringUtils.SHIFT_JIS));
@@ -207,19 +270,21 @@ final class DecodedBitStreamParser {
   }
 
   private static void decodeByteSegment(BitSource bits,
-                                        StringBuilder result,
+                                        Appendable result,
                                         int count,
                                         CharacterSetECI currentCharacterSetECI,
-                                        Collection<byte[]> byteSegments,
-                                        Map<DecodeHintType,?> hints) throws FormatException {
+                                        List<byte[]> byteSegments,
+                                        Map<DecodeHintType,?> hints) throws FormatException, IOException {
     // Don't crash trying to read more bits than we have available.
     if (8 * count > bits.available()) {
       throw FormatException.getFormatInstance();
     }
 
     byte[] readBytes = new byte[count];
-    for (int i = 0; i < count; i++) {
-      readBytes[i] = (byte) bits.readBits(8);
+    bits.readBytes(readBytes, count);
+    byteSegments.add(readBytes);
+    if (result == NO_TEXT) {
+      return;
     }
     String encoding;
     if (currentCharacterSetECI == null) {
@@ -237,7 +302,6 @@ final class DecodedBitStreamParser {
     } catch (UnsupportedEncodingException ignored) {
       throw FormatException.getFormatInstance();
     }
-    byteSegments.add(readBytes);
   }
 
   private static char toAlphaNumericChar(int value) throws FormatException {
@@ -248,18 +312,20 @@ final class DecodedBitStreamParser {
   }
 
   private static void decodeAlphanumericSegment(BitSource bits,
-                                                StringBuilder result,
+                                                Appendable result,
                                                 int count,
-                                                boolean fc1InEffect) throws FormatException {
+                                                boolean fc1InEffect) throws FormatException, IOException {
     // Read two characters at a time
-    int start = result.length();
+    boolean percentPending = false;
     while (count > 1) {
       if (bits.available() < 11) {
         throw FormatException.getFormatInstance();
       }
       int nextTwoCharsBits = bits.readBits(11);
-      result.append(toAlphaNumericChar(nextTwoCharsBits / 45));
-      result.append(toAlphaNumericChar(nextTwoCharsBits % 45));
+      percentPending = appendAlphanumericChar(result, toAlphaNumericChar(nextTwoCharsBits / 45),
+          fc1InEffect, percentPending);
+      percentPending = appendAlphanumericChar(result, toAlphaNumericChar(nextTwoCharsBits % 45),
+          fc1InEffect, percentPending);
       count -= 2;
     }
     if (count == 1) {
@@ -267,28 +333,46 @@ final class DecodedBitStreamParser {
       if (bits.available() < 6) {
         throw FormatException.getFormatInstance();
       }
-      result.append(toAlphaNumericChar(bits.readBits(6)));
+      percentPending = appendAlphanumericChar(result, toAlphaNumericChar(bits.readBits(6)),
+          fc1InEffect, percentPending);
     }
-    // See section 6.4.8.1, 6.4.8.2
-    if (fc1InEffect) {
-      // We need to massage the result a bit if in an FNC1 mode:
-      for (int i = start; i < result.length(); i++) {
-        if (result.charAt(i) == '%') {
-          if (i < result.length() - 1 && result.charAt(i + 1) == '%') {
-            // %% is rendered as %
-            result.deleteCharAt(i + 1);
-          } else {
-            // In alpha mode, % should be converted to FNC1 separator 0x1D
-            result.setCharAt(i, (char) 0x1D);
-          }
-        }
+    if (percentPending) {
+      result.append((char) 0x1D);
+    }
+  }
+
+  /**
+   * Appends a character of an alphanumeric segment. See section 6.4.8.1, 6.4.8.2: in an FNC1
+   * mode, %% is rendered as %, and any other % is the FNC1 separator 0x1D. Which one a % is
+   * is only known from the character after it, so it is held back until then.
+   *
+   * @param percentPending whether a % has been held back
+   * @return whether a % is held back now
+   */
+  private static boolean appendAlphanumericChar(Appendable result,
+                                                char c,
+                                                boolean fc1InEffect,
+                                                boolean percentPending) throws IOException {
+    if (!fc1InEffect) {
+      result.append(c);
+      return false;
+    }
+    if (percentPending) {
+      // %% is rendered as %; otherwise % stood for the separator
+      result.append(c == '%' ? '%' : (char) 0x1D);
+      if (c == '%') {
+        return false;
       }
+    } else if (c == '%') {
+      return true;
     }
+    result.append(c);
+    return false;
   }
 
   private static void decodeNumericSegment(BitSource bits,
-                                           StringBuilder result,
-                                           int count) throws FormatException {
+                                           Appendable result,
+                                           int count) throws FormatException, IOException {
     // Read three digits at a time
     while (count >= 3) {
       // Each 10 bits encodes three digits
@@ -21,8 +21,9 @@ import com.google.zxing.DecodeHintType;
 import com.google.zxing.FormatException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.common.DecoderResult;
+import com.google.zxing.common.TaskRunner;
 import com.google.zxing.common.reedsolomon.GenericGF;
-import com.google.zxing.common.reedsolomon.ReedSolomonDecoder;
+import com.google.zxing.common.reedsolomon.ByteReedSolomonDecoder;
 import com.google.zxing.common.reedsolomon.ReedSolomonException;
 
 import java.util.Map;
@@ -31,14 +32,26 @@ import java.util.Map;
  * <p>The main class which implements QR Code decoding -- as opposed to locating and extracting
  * the QR Code from an image.</p>
  *
+ * <p>This class is not thread-safe, as it corrects errors in scratch space of its own. Each
+ * thread must allocate its own object.</p>
+ *
  * @author Sean Owen
  */
 public final class Decoder {
 
-  private final ReedSolomonDecoder rsDecoder;
+  // Codewords read less surely than this may be taken for erasures
+  private static final float ERASURE_CONFIDENCE = 0.5f;
+  // Error-correction codewords that erasures must leave over, so that a wrong guess can still be
+  // told from a correct one
+  private static final int MIN_SPARE_EC_CODEWORDS = 2;
+
+  private final ByteReedSolomonDecoder rsDecoder;
+  // One for each task correcting blocks in parallel, as they have scratch space of their own;
+  // the first task uses rsDecoder
+  private ByteReedSolomonDecoder[] taskDecoders;
 
   public Decoder() {
-    rsDecoder = new ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+    rsDecoder = new ByteReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
   }
 
   public DecoderResult decode(boolean[][] image) throws ChecksumException, FormatException {
@@ -84,13 +97,58 @@ public final class Decoder {
    */
   public DecoderResult decode(BitMatrix bits, Map<DecodeHintType,?> hints)
       throws FormatException, ChecksumException {
+    return decode(bits, false, hints);
+  }
+
+  /**
+   * <p>Like {@link #decode(BitMatrix, Map)}, but for a QR Code that may be light on dark, without
+   * inverting the matrix first.</p>
+   *
+   * @param bits booleans representing white/black QR Code modules
+   * @param inverted true if a 0 or "false" is taken to mean a black module instead
+   * @param hints decoding hints that should be used to influence decoding
+   * @return text and bytes encoded within the QR Code
+   * @throws FormatException if the QR Code cannot be decoded
+   * @throws ChecksumException if error correction fails
+   */
+  public DecoderResult decode(BitMatrix bits, boolean inverted, Map<DecodeHintType,?> hints)
+      throws FormatException, ChecksumException {
+    return decode(bits, inverted, null, hints);
+  }
+
+  /**
+   * <p>Like {@link #decode(BitMatrix, boolean, Map)}, but also given how sure the reading of
+   * each module is, as by {@link com.google.zxing.common.GrayscaleDetectorResult#getConfidences()}.
+   * A block with too many errors to correct is tried again with its least sure codewords as
+   * erasures, which cost half as much error correction as errors do.</p>
+   *
+   * @param bits booleans representing white/black QR Code modules
+   * @param inverted true if a 0 or "false" is taken to mean a black module instead
+   * @param confidences confidence in each module, row by row, from 0 to 1, or null if not known
+   * @param hints decoding hints that should be used to influence decoding
+   * @return text and bytes encoded within the QR Code
+   * @throws FormatException if the QR Code cannot be decoded
+   * @throws ChecksumException if error correction fails
+   */
+  public DecoderResult decode(BitMatrix bits, boolean inverted, float[] confidences,
+                              Map<DecodeHintType,?> hints)
+      throws FormatException, ChecksumException {
 
     // Construct a parser and read version, error-correction level
-    BitMatrixParser parser = new BitMatrixParser(bits);
+    BitMatrixParser parser = new BitMatrixParser(bits, inverted);
+    if (hints != null && hints.containsKey(DecodeHintType.QR_PICK_ORIENTATION)) {
+      // Settle on one orientation from the format information, and decode only that
+      boolean mirrored = parser.readOrientation();
+      DecoderResult result = decode(parser, confidences, hints);
+      if (mirrored) {
+        result.setOther(new QRCodeDecoderMetaData(true));
+      }
+      return result;
+    }
     FormatException fe = null;
     ChecksumException ce = null;
     try {
-      return decode(parser, hints);
+      return decode(parser, confidences, hints);
     } catch (FormatException e) {
       fe = e;
     } catch (ChecksumException e) {
@@ -120,7 +178,7 @@ public final class Decoder {
       // Prepare for a mirrored reading.
       parser.mirror();
 
-      DecoderResult result = decode(parser, hints);
+      DecoderResult result = decode(parser, confidences, hints);
 
       // Success! Notify the caller that the code was mirrored.
       result.setOther(new QRCodeDecoderMetaData(true));
@@ -140,15 +198,16 @@ public final class Decoder {
     }
   }
 
-  private DecoderResult decode(BitMatrixParser parser, Map<DecodeHintType,?> hints)
+  private DecoderResult decode(BitMatrixParser parser, float[] confidences, Map<DecodeHintType,?> hints)
       throws FormatException, ChecksumException {
     Version version = parser.readVersion();
     ErrorCorrectionLevel ecLevel = parser.readFormatInformation().getErrorCorrectionLevel();
 
     // Read codewords
-    byte[] codewords = parser.readCodewords();
+    float[] codewordConfidences = confidences == null ? null : new float[version.getTotalCodewords()];
+    byte[] codewords = parser.readCodewords(confidences, codewordConfidences);
     // Separate into data blocks
-    DataBlock[] dataBlocks = DataBlock.getDataBlocks(codewords, version, ecLevel);
+    DataBlock[] dataBlocks = DataBlock.getDataBlocks(codewords, codewordConfidences, version, ecLevel);
 
     // Count total number of data bytes
     int totalBytes = 0;
@@ -158,46 +217,162 @@ public final class Decoder {
     byte[] resultBytes = new byte[totalBytes];
     int resultOffset = 0;
 
-    // Error-correct and copy data blocks together into a stream of bytes
-    for (DataBlock dataBlock : dataBlocks) {
-      byte[] codewordBytes = dataBlock.getCodewords();
-      int numDataCodewords = dataBlock.getNumDataCodewords();
-      correctErrors(codewordBytes, numDataCodewords);
+    // Error-correct, then copy data blocks together into a stream of bytes
+    int[] blockErrorsCorrected = correctBlocks(dataBlocks, hints);
+    int errorsCorrected = 0;
+    for (int j = 0; j < dataBlocks.length; j++) {
+      byte[] codewordBytes = dataBlocks[j].getCodewords();
+      int numDataCodewords = dataBlocks[j].getNumDataCodewords();
       for (int i = 0; i < numDataCodewords; i++) {
         resultBytes[resultOffset++] = codewordBytes[i];
       }
+      errorsCorrected += blockErrorsCorrected[j];
     }
 
     // Decode the contents of that stream of bytes
-    return DecodedBitStreamParser.decode(resultBytes, version, ecLevel, hints);
+    DecoderResult result = DecodedBitStreamParser.decode(resultBytes, version, ecLevel, hints);
+    result.setErrorsCorrected(errorsCorrected);
+    result.setBlockErrorsCorrected(blockErrorsCorrected);
+    return result;
+  }
+
+  /**
+   * <p>Corrects the errors in every block. With a {@link DecodeHintType#TASK_RUNNER} and at
+   * least {@link DecodeHintType#QR_MIN_PARALLEL_BLOCKS} blocks, these are shared out over several
+   * tasks, each with a Reed-Solomon decoder of its own; either way, the blocks are corrected the
+   * same.</p>
+   *
+   * @return number of codewords corrected in each block
+   * @throws ChecksumException if error correction fails for any block
+   */
+  private int[] correctBlocks(final DataBlock[] dataBlocks, Map<DecodeHintType,?> hints)
+      throws ChecksumException {
+    final int[] blockErrorsCorrected = new int[dataBlocks.length];
+    TaskRunner taskRunner = hints == null ? null : (TaskRunner) hints.get(DecodeHintType.TASK_RUNNER);
+    Integer minParallelBlocks =
+        hints == null ? null : (Integer) hints.get(DecodeHintType.QR_MIN_PARALLEL_BLOCKS);
+    int numTasks = 1;
+    if (taskRunner != null && minParallelBlocks != null && dataBlocks.length >= minParallelBlocks) {
+      numTasks = Math.min(taskRunner.getParallelism(), dataBlocks.length);
+    }
+    if (numTasks <= 1) {
+      for (int i = 0; i < dataBlocks.length; i++) {
+        blockErrorsCorrected[i] = correctErrors(rsDecoder, dataBlocks[i]);
+      }
+      return blockErrorsCorrected;
+    }
+
+    if (taskDecoders == null || taskDecoders.length < numTasks) {
+      ByteReedSolomonDecoder[] newTaskDecoders = new ByteReedSolomonDecoder[numTasks];
+      newTaskDecoders[0] = rsDecoder;
+      for (int task = 1; task < numTasks; task++) {
+        newTaskDecoders[task] = taskDecoders != null && task < taskDecoders.length ? taskDecoders[task] :
+            new ByteReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+      }
+      taskDecoders = newTaskDecoders;
+    }
+    // Each task corrects a run of blocks and notes whether any of them failed
+    final boolean[] failed = new boolean[numTasks];
+    Runnable[] tasks = new Runnable[numTasks];
+    for (int task = 0; task < numTasks; task++) {
+      final int firstBlock = dataBlocks.length * task / numTasks;
+      final int endBlock = dataBlocks.length * (task + 1) / numTasks;
+      final ByteReedSolomonDecoder taskDecoder = taskDecoders[task];
+      final int taskIndex = task;
+      tasks[task] = new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = firstBlock; i < endBlock; i++) {
+              blockErrorsCorrected[i] = correctErrors(taskDecoder, dataBlocks[i]);
+            }
+          } catch (ChecksumException ignored) {
+            failed[taskIndex] = true;
+          }
+        }
+      };
+    }
+    taskRunner.runAll(tasks);
+    for (boolean taskFailed : failed) {
+      if (taskFailed) {
+        throw ChecksumException.getChecksumInstance();
+      }
+    }
+    return blockErrorsCorrected;
+  }
+
+  private static int correctErrors(ByteReedSolomonDecoder decoder, DataBlock dataBlock)
+      throws ChecksumException {
+    return correctErrors(decoder, dataBlock.getCodewords(), dataBlock.getNumDataCodewords(),
+        dataBlock.getConfidences());
   }
 
   /**
    * <p>Given data and error-correction codewords received, possibly corrupted by errors, attempts to
    * correct the errors in-place using Reed-Solomon error correction.</p>
    *
+   * @param decoder Reed-Solomon decoder to correct them with
    * @param codewordBytes data and error correction codewords
    * @param numDataCodewords number of codewords that are data bytes
+   * @param confidences confidence in each codeword, or null if not known
+   * @return number of codewords corrected
    * @throws ChecksumException if error correction fails
    */
-  private void correctErrors(byte[] codewordBytes, int numDataCodewords) throws ChecksumException {
-    int numCodewords = codewordBytes.length;
-    // First read into an array of ints
-    int[] codewordsInts = new int[numCodewords];
-    for (int i = 0; i < numCodewords; i++) {
-      codewordsInts[i] = codewordBytes[i] & 0xFF;
-    }
+  private static int correctErrors(ByteReedSolomonDecoder decoder, byte[] codewordBytes,
+                                   int numDataCodewords, float[] confidences)
+      throws ChecksumException {
     int numECCodewords = codewordBytes.length - numDataCodewords;
     try {
-      rsDecoder.decode(codewordsInts, numECCodewords);
+      return decoder.decode(codewordBytes, numECCodewords);
+    } catch (ReedSolomonException ignored) {
+      if (confidences == null) {
+        throw ChecksumException.getChecksumInstance();
+      }
+    }
+    // Nothing was corrected; try again, erasing the codewords most likely to be wrong
+    int[] erasures = new int[numECCodewords];
+    int numErasures = findErasures(confidences, numECCodewords - MIN_SPARE_EC_CODEWORDS, erasures);
+    if (numErasures == 0) {
+      throw ChecksumException.getChecksumInstance();
+    }
+    try {
+      return decoder.decode(codewordBytes, numECCodewords, erasures, numErasures);
     } catch (ReedSolomonException ignored) {
       throw ChecksumException.getChecksumInstance();
     }
-    // Copy back into array of bytes -- only need to worry about the bytes that were data
-    // We don't care about errors in the error-correction codewords
-    for (int i = 0; i < numDataCodewords; i++) {
-      codewordBytes[i] = (byte) codewordsInts[i];
+  }
+
+  /**
+   * Picks up to maxErasures of the codewords read less surely than {@link #ERASURE_CONFIDENCE},
+   * least sure first.
+   *
+   * @return number of erasures stored in erasures
+   */
+  private static int findErasures(float[] confidences, int maxErasures, int[] erasures) {
+    int numErasures = 0;
+    for (int i = 0; i < confidences.length; i++) {
+      float confidence = confidences[i];
+      if (confidence >= ERASURE_CONFIDENCE) {
+        continue;
+      }
+      // Insert in order of confidence, dropping the surest if full
+      int index = numErasures;
+      while (index > 0 && confidences[erasures[index - 1]] > confidence) {
+        index--;
+      }
+      if (index >= maxErasures) {
+        continue;
+      }
+      int end = Math.min(numErasures, maxErasures - 1);
+      for (int k = end; k > index; k--) {
+        erasures[k] = erasures[k - 1];
+      }
+      erasures[index] = i;
+      if (numErasures < maxErasures) {
+        numErasures++;
+      }
     }
+    return numErasures;
   }
 
 }
@@ -68,12 +68,14 @@ final class FormatInformation {
 
   private final ErrorCorrectionLevel errorCorrectionLevel;
   private final byte dataMask;
+  private final int bitsDifference;
 
-  private FormatInformation(int formatInfo) {
+  private FormatInformation(int formatInfo, int bitsDifference) {
     // Bits 3,4
     errorCorrectionLevel = ErrorCorrectionLevel.forBits((formatInfo >> 3) & 0x03);
     // Bottom 3 bits
     dataMask = (byte) (formatInfo & 0x07);
+    this.bitsDifference = bitsDifference;
   }
 
   static int numBitsDiffering(int a, int b) {
@@ -107,7 +109,7 @@ final class FormatInformation {
       int targetInfo = decodeInfo[0];
       if (targetInfo == maskedFormatInfo1 || targetInfo == maskedFormatInfo2) {
         // Found an exact match
-        return new FormatInformation(decodeInfo[1]);
+        return new FormatInformation(decodeInfo[1], 0);
       }
       int bitsDifference = numBitsDiffering(maskedFormatInfo1, targetInfo);
       if (bitsDifference < bestDifference) {
@@ -126,7 +128,7 @@ final class FormatInformation {
     // Hamming distance of the 32 masked codes is 7, by construction, so <= 3 bits
     // differing means we found a match
     if (bestDifference <= 3) {
-      return new FormatInformation(bestFormatInfo);
+      return new FormatInformation(bestFormatInfo, bestDifference);
     }
     return null;
   }
@@ -139,6 +141,14 @@ final class FormatInformation {
     return dataMask;
   }
 
+  /**
+   * @return number of bits in which the closer of the two copies read differs from the valid
+   *  format information it was taken for, 0 to 3
+   */
+  int getBitsDifference() {
+    return bitsDifference;
+  }
+
   @Override
   public int hashCode() {
     return (errorCorrectionLevel.ordinal() << 3) | (int) dataMask;
@@ -46,6 +46,9 @@ public final class Version {
   private final int[] alignmentPatternCenters;
   private final ECBlocks[] ecBlocks;
   private final int totalCodewords;
+  // Where each codeword bit lies; built when first needed and never modified afterwards, so it can
+  // be shared by decoders running on different threads
+  private volatile int[] codewordModules;
 
   private Version(int versionNumber,
                   int[] alignmentPatternCenters,
@@ -133,6 +136,53 @@ public final class Version {
     return null;
   }
 
+  /**
+   * <p>Gives the position of each bit of each codeword in a symbol of this version, in the order
+   * they are read: codeword by codeword, most significant bit first, each packed as
+   * {@code (y << 8) | x}. Remainder bits, which belong to no codeword, are left out.</p>
+   *
+   * @return positions of the codeword bits; must not be modified
+   */
+  int[] getCodewordModules() {
+    int[] modules = codewordModules;
+    if (modules == null) {
+      modules = buildCodewordModules();
+      codewordModules = modules;
+    }
+    return modules;
+  }
+
+  /**
+   * See ISO 18004:2006 6.7.3
+   */
+  private int[] buildCodewordModules() {
+    int dimension = getDimensionForVersion();
+    BitMatrix functionPattern = buildFunctionPattern();
+    int[] modules = new int[totalCodewords * 8];
+    int offset = 0;
+    boolean readingUp = true;
+    // Read columns in pairs, from right to left
+    for (int j = dimension - 1; j > 0; j -= 2) {
+      if (j == 6) {
+        // Skip whole column with vertical alignment pattern;
+        // saves time and makes the other code proceed more cleanly
+        j--;
+      }
+      // Read alternatingly from bottom to top then top to bottom
+      for (int count = 0; count < dimension; count++) {
+        int i = readingUp ? dimension - 1 - count : count;
+        for (int col = 0; col < 2; col++) {
+          // Ignore bits covered by the function pattern, and the remainder bits at the end
+          if (!functionPattern.get(j - col, i) && offset < modules.length) {
+            modules[offset++] = (i << 8) | (j - col);
+          }
+        }
+      }
+      readingUp = !readingUp;
+    }
+    return modules;
+  }
+
   /**
    * See ISO 18004:2006 Annex E
    */
@@ -46,7 +46,9 @@ final class AlignmentPatternFinder {
   private final int width;
   private final int height;
   private final float moduleSize;
+  private final boolean inverted;
   private final int[] crossCheckStateCount;
+  private int[] columnTransitions;
   private final ResultPointCallback resultPointCallback;
 
   /**
@@ -58,6 +60,7 @@ final class AlignmentPatternFinder {
    * @param width width of region to search
    * @param height height of region to search
    * @param moduleSize estimated module size so far
+   * @param inverted true to look for a light-on-dark pattern
    */
   AlignmentPatternFinder(BitMatrix image,
                          int startX,
@@ -65,6 +68,7 @@ final class AlignmentPatternFinder {
                          int width,
                          int height,
                          float moduleSize,
+                         boolean inverted,
                          ResultPointCallback resultPointCallback) {
     this.image = image;
     this.possibleCenters = new ArrayList<>(5);
@@ -73,6 +77,7 @@ final class AlignmentPatternFinder {
     this.width = width;
     this.height = height;
     this.moduleSize = moduleSize;
+    this.inverted = inverted;
     this.crossCheckStateCount = new int[3];
     this.resultPointCallback = resultPointCallback;
   }
@@ -102,13 +107,13 @@ final class AlignmentPatternFinder {
       // Burn off leading white pixels before anything else; if we start in the middle of
       // a white run, it doesn't make sense to count its length, since we don't know if the
       // white run continued to the left of the start point
-      while (j < maxJ && !image.get(j, i)) {
+      while (j < maxJ && image.get(j, i) == inverted) {
         j++;
       }
       int currentState = 0;
       while (j < maxJ) {
-        if (image.get(j, i)) {
-          // Black pixel
+        if (image.get(j, i) != inverted) {
+          // Black pixel, or white if inverted
           if (currentState == 1) { // Counting black pixels
             stateCount[1]++;
           } else { // Counting white pixels
@@ -190,55 +195,87 @@ final class AlignmentPatternFinder {
    */
   private float crossCheckVertical(int startI, int centerJ, int maxCount,
       int originalStateCountTotal) {
-    BitMatrix image = this.image;
-
-    int maxI = image.getHeight();
+    // A pattern that ends farther from startI than this is too large to be accepted below, so
+    // the column needn't be read any farther. Rows are counted from top from here on
+    int reach = 2 * originalStateCountTotal;
+    int top = Math.max(0, startI - reach);
+    int maxI = Math.min(image.getHeight(), startI + reach + 1) - top;
+    if (columnTransitions == null || columnTransitions.length < maxI) {
+      columnTransitions = new int[maxI];
+    }
+    int[] transitions = columnTransitions;
+    int numTransitions = image.getColumnTransitions(centerJ, top, top + maxI, transitions);
     int[] stateCount = crossCheckStateCount;
     stateCount[0] = 0;
     stateCount[1] = 0;
     stateCount[2] = 0;
 
-    // Start counting up from center
-    int i = startI;
-    while (i >= 0 && image.get(centerJ, i) && stateCount[1] <= maxCount) {
-      stateCount[1]++;
-      i--;
-    }
-    // If already too many modules in this state or ran off the edge:
-    if (i < 0 || stateCount[1] > maxCount) {
-      return Float.NaN;
-    }
-    while (i >= 0 && !image.get(centerJ, i) && stateCount[0] <= maxCount) {
-      stateCount[0]++;
-      i--;
+    // Start counting up from center. index counts the transitions at or before i, so pixel i is
+    // black iff index is odd, and its run starts at transitions[index - 1], or 0 if index is 0
+    int i = startI - top;
+    int index = transitionsUpTo(transitions, numTransitions, i);
+    if (((index & 1) == 1) != inverted) {
+      int runStart = index > 0 ? transitions[index - 1] : 0;
+      stateCount[1] = i - runStart + 1;
+      // If already too many modules in this state or ran off the edge:
+      if (runStart == 0 || stateCount[1] > maxCount) {
+        return Float.NaN;
+      }
+      i = runStart - 1;
+      index--;
     }
+    int runStart = index > 0 ? transitions[index - 1] : 0;
+    stateCount[0] = i - runStart + 1;
     if (stateCount[0] > maxCount) {
       return Float.NaN;
     }
 
-    // Now also count down from center
-    i = startI + 1;
-    while (i < maxI && image.get(centerJ, i) && stateCount[1] <= maxCount) {
-      stateCount[1]++;
-      i++;
-    }
-    if (i == maxI || stateCount[1] > maxCount) {
+    // Now also count down from center; a run ends at transitions[index], or maxI past the last one
+    i = startI - top + 1;
+    if (i == maxI) {
       return Float.NaN;
     }
-    while (i < maxI && !image.get(centerJ, i) && stateCount[2] <= maxCount) {
-      stateCount[2]++;
-      i++;
+    index = transitionsUpTo(transitions, numTransitions, i);
+    if (((index & 1) == 1) != inverted) {
+      int runEnd = index < numTransitions ? transitions[index] : maxI;
+      stateCount[1] += runEnd - i;
+      if (runEnd == maxI || stateCount[1] > maxCount) {
+        return Float.NaN;
+      }
+      i = runEnd;
+      index++;
     }
+    int runEnd = index < numTransitions ? transitions[index] : maxI;
+    stateCount[2] = runEnd - i;
     if (stateCount[2] > maxCount) {
       return Float.NaN;
     }
+    i = runEnd;
 
     int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2];
     if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= 2 * originalStateCountTotal) {
       return Float.NaN;
     }
 
-    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, i) : Float.NaN;
+    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, top + i) : Float.NaN;
+  }
+
+  /**
+   * @return number of the first numTransitions entries of {@code transitions} that are at most x,
+   *         found by binary search
+   */
+  private static int transitionsUpTo(int[] transitions, int numTransitions, int x) {
+    int low = 0;
+    int high = numTransitions;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (transitions[mid] <= x) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
   }
 
   /**
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.zxing.qrcode.detector;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.PerspectiveTransform;
+
+/**
+ * <p>Remembers where a QR Code was found in one frame, so that the next frame of a code held
+ * still under a fixed scanner can be sampled with the same transform. Before the transform is
+ * reused, each of the three finder patterns is cross-checked, horizontally and vertically, at
+ * its remembered center; if any has moved by more than the tolerance, or changed size, the
+ * frame is detected from scratch and the cache updated.</p>
+ *
+ * <p>A cache is passed to readers with {@link com.google.zxing.DecodeHintType#DETECTION_CACHE}.
+ * It is not thread-safe; each scanner should have its own.</p>
+ */
+public final class DetectionCache {
+
+  private static final float DEFAULT_TOLERANCE = 0.25f;
+
+  private final float tolerance;
+  private final int[] crossCheckStateCount;
+  private FinderPattern[] patterns;
+  private PerspectiveTransform transform;
+  private int dimension;
+  private ResultPoint[] points;
+  private int hits;
+  private int misses;
+
+  public DetectionCache() {
+    this(DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * @param tolerance how far, in modules, a finder pattern may be from where it was last found
+   *  for the last transform to still be used
+   */
+  public DetectionCache(float tolerance) {
+    this.tolerance = tolerance;
+    crossCheckStateCount = new int[5];
+  }
+
+  /**
+   * @return true if a detection is remembered, to be checked against the next frame
+   */
+  public boolean isValid() {
+    return patterns != null;
+  }
+
+  /**
+   * Forgets the remembered detection, for example because the code sampled with it could not be
+   * decoded. The next frame is detected from scratch.
+   */
+  public void invalidate() {
+    patterns = null;
+    transform = null;
+    points = null;
+  }
+
+  /**
+   * @return number of frames sampled with a remembered transform
+   */
+  public int getHitCount() {
+    return hits;
+  }
+
+  /**
+   * @return number of frames that had to be detected from scratch
+   */
+  public int getMissCount() {
+    return misses;
+  }
+
+  /**
+   * @return fraction of frames sampled with a remembered transform, or 0 if there were none
+   */
+  public float getHitRate() {
+    int total = hits + misses;
+    return total == 0 ? 0.0f : (float) hits / total;
+  }
+
+  public void resetStatistics() {
+    hits = 0;
+    misses = 0;
+  }
+
+  PerspectiveTransform getTransform() {
+    return transform;
+  }
+
+  int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return a copy of the points of the remembered detection, which the caller may reorder
+   */
+  ResultPoint[] getPoints() {
+    return points.clone();
+  }
+
+  /**
+   * @param image frame to check
+   * @return true if all three finder patterns are still where they were, so that the remembered
+   *  transform can be used for this frame
+   */
+  boolean verify(BitMatrix image) {
+    if (patterns != null) {
+      for (FinderPattern pattern : patterns) {
+        if (!isStillAt(image, pattern)) {
+          misses++;
+          return false;
+        }
+      }
+      hits++;
+      return true;
+    }
+    misses++;
+    return false;
+  }
+
+  /**
+   * Remembers a detection made from scratch.
+   */
+  void update(FinderPattern topLeft,
+              FinderPattern topRight,
+              FinderPattern bottomLeft,
+              PerspectiveTransform transform,
+              int dimension,
+              ResultPoint[] points) {
+    this.patterns = new FinderPattern[] {topLeft, topRight, bottomLeft};
+    this.transform = transform;
+    this.dimension = dimension;
+    // Callers reorder the points of a mirrored code in place, so keep a copy of our own
+    this.points = points.clone();
+  }
+
+  private boolean isStillAt(BitMatrix image, FinderPattern pattern) {
+    float moduleSize = pattern.getEstimatedModuleSize();
+    float maxOffset = Math.max(tolerance * moduleSize, 1.0f);
+    int centerX = (int) pattern.getX();
+    int centerY = (int) pattern.getY();
+    // The center black square is 3 modules wide; allow it and its neighbors to have grown a bit
+    int maxCount = (int) (4.0f * moduleSize) + 1;
+    int expectedTotal = (int) (7.0f * moduleSize);
+
+    float offsetY = crossCheck(image, centerX, centerY, 0, 1, maxCount, expectedTotal);
+    if (Float.isNaN(offsetY) || Math.abs(centerY + offsetY - pattern.getY()) > maxOffset) {
+      return false;
+    }
+    float offsetX = crossCheck(image, centerX, (int) (centerY + offsetY), 1, 0, maxCount, expectedTotal);
+    return !Float.isNaN(offsetX) && Math.abs(centerX + offsetX - pattern.getX()) <= maxOffset;
+  }
+
+  /**
+   * Reads the 1:1:3:1:1 black/white/black/white/black runs of a finder pattern through a point,
+   * along a row or column.
+   *
+   * @return position of the center of the runs relative to the point, or {@link Float#NaN} if
+   *  there is no finder pattern of the expected size there
+   */
+  private float crossCheck(BitMatrix image, int startX, int startY, int dx, int dy,
+                           int maxCount, int expectedTotal) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] stateCount = crossCheckStateCount;
+    for (int i = 0; i < stateCount.length; i++) {
+      stateCount[i] = 0;
+    }
+
+    // Start counting back from center
+    int x = startX;
+    int y = startY;
+    int back = 0;
+    while (x >= 0 && y >= 0 && image.get(x, y)) {
+      stateCount[2]++;
+      x -= dx;
+      y -= dy;
+      back++;
+    }
+    if (x < 0 || y < 0 || back == 0) {
+      return Float.NaN;
+    }
+    while (x >= 0 && y >= 0 && !image.get(x, y) && stateCount[1] <= maxCount) {
+      stateCount[1]++;
+      x -= dx;
+      y -= dy;
+    }
+    if (x < 0 || y < 0 || stateCount[1] > maxCount) {
+      return Float.NaN;
+    }
+    while (x >= 0 && y >= 0 && image.get(x, y) && stateCount[0] <= maxCount) {
+      stateCount[0]++;
+      x -= dx;
+      y -= dy;
+    }
+    if (stateCount[0] > maxCount) {
+      return Float.NaN;
+    }
+
+    // Now also count forward from center
+    x = startX + dx;
+    y = startY + dy;
+    int end = 1;
+    while (x < width && y < height && image.get(x, y)) {
+      stateCount[2]++;
+      x += dx;
+      y += dy;
+      end++;
+    }
+    if (x == width || y == height) {
+      return Float.NaN;
+    }
+    while (x < width && y < height && !image.get(x, y) && stateCount[3] < maxCount) {
+      stateCount[3]++;
+      x += dx;
+      y += dy;
+      end++;
+    }
+    if (x == width || y == height || stateCount[3] >= maxCount) {
+      return Float.NaN;
+    }
+    while (x < width && y < height && image.get(x, y) && stateCount[4] < maxCount) {
+      stateCount[4]++;
+      x += dx;
+      y += dy;
+      end++;
+    }
+    if (stateCount[4] >= maxCount) {
+      return Float.NaN;
+    }
+
+    // Much like the finder's own cross-checks, the total must be about what it was
+    int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] + stateCount[4];
+    if (5 * Math.abs(stateCountTotal - expectedTotal) >= expectedTotal ||
+        !FinderPatternFinder.foundPatternCross(stateCount)) {
+      return Float.NaN;
+    }
+    return (float) (end - stateCount[4] - stateCount[3]) - stateCount[2] / 2.0f;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(50);
+    result.append("hits: ").append(hits);
+    result.append(", misses: ").append(misses);
+    result.append(", hit rate: ").append(Math.round(getHitRate() * 100.0f)).append('%');
+    return result.toString();
+  }
+
+}
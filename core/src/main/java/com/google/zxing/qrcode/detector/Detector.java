@@ -22,7 +22,10 @@ import com.google.zxing.NotFoundException;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.BitPool;
 import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.GrayscaleDetectorResult;
+import com.google.zxing.common.GrayscaleGridSampler;
 import com.google.zxing.common.GridSampler;
 import com.google.zxing.common.PerspectiveTransform;
 import com.google.zxing.common.detector.MathUtils;
@@ -38,8 +41,14 @@ import java.util.Map;
  */
 public class Detector {
 
+  // Least difference between the dark and light modules of a finder pattern, in luminance levels
+  private static final float MIN_CONTRAST = 8.0f;
+
   private final BitMatrix image;
   private ResultPointCallback resultPointCallback;
+  private BitPool bitPool;
+  // Whether the code being located is light on dark, as its finder patterns are
+  private boolean inverted;
 
   public Detector(BitMatrix image) {
     this.image = image;
@@ -73,22 +82,210 @@ public class Detector {
    * @throws FormatException if a QR Code cannot be decoded
    */
   public final DetectorResult detect(Map<DecodeHintType,?> hints) throws NotFoundException, FormatException {
+    return detect(hints, null);
+  }
+
+  /**
+   * <p>Detects a QR Code in an image, and samples it from the luminance of the image if a
+   * sampler is given, as {@link #processFinderPatternInfo(FinderPatternInfo, GrayscaleGridSampler)}
+   * does. A transform remembered by {@link DecodeHintType#DETECTION_CACHE} is reused either way.</p>
+   *
+   * @param hints optional hints to detector
+   * @param sampler sampler of the luminance of this detector's image, or {@code null} to sample
+   *  this detector's {@link BitMatrix}
+   * @return {@link DetectorResult} encapsulating results of detecting a QR Code; a
+   *  {@link GrayscaleDetectorResult} if a sampler was given
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if a QR Code cannot be decoded
+   */
+  public final DetectorResult detect(Map<DecodeHintType,?> hints, GrayscaleGridSampler sampler)
+      throws NotFoundException, FormatException {
+    DetectorResult result = detectRemembered(hints, sampler);
+    return result == null ? detectFromScratch(hints, sampler) : result;
+  }
+
+  /**
+   * <p>Samples a QR Code with the transform remembered by {@link DecodeHintType#DETECTION_CACHE},
+   * if its finder patterns are still where they were. The frame is counted as a hit or a miss of
+   * the cache either way, so call this at most once per frame.</p>
+   *
+   * @param hints optional hints to detector
+   * @param sampler sampler of the luminance of this detector's image, or {@code null} to sample
+   *  this detector's {@link BitMatrix}
+   * @return {@link DetectorResult} of the remembered detection, or {@code null} if there is no
+   *  cache or it has nothing that fits this frame
+   * @throws NotFoundException if the remembered grid no longer falls on the image
+   */
+  public final DetectorResult detectRemembered(Map<DecodeHintType,?> hints,
+                                               GrayscaleGridSampler sampler)
+      throws NotFoundException {
+    DetectionCache detectionCache = hints == null ? null :
+        (DetectionCache) hints.get(DecodeHintType.DETECTION_CACHE);
+    if (detectionCache == null || !detectionCache.verify(image)) {
+      return null;
+    }
+    readHints(hints);
+    // Only codes dark on light are remembered
+    inverted = false;
+    PerspectiveTransform transform = detectionCache.getTransform();
+    int dimension = detectionCache.getDimension();
+    if (sampler != null) {
+      int[] luminances = sampler.sampleLuminances(dimension, dimension, transform);
+      return thresholdModules(luminances, dimension, detectionCache.getPoints());
+    }
+    BitMatrix bits = sampleGrid(image, transform, dimension, bitPool);
+    return new DetectorResult(bits, detectionCache.getPoints());
+  }
+
+  /**
+   * <p>Like {@link #detect(Map, GrayscaleGridSampler)}, but searches for the finder patterns
+   * without checking the frame against a {@link DecodeHintType#DETECTION_CACHE} first. What is
+   * found replaces the remembered detection. This is for a frame that has already been checked
+   * with {@link #detectRemembered(Map, GrayscaleGridSampler)}.</p>
+   *
+   * @param hints optional hints to detector
+   * @param sampler sampler of the luminance of this detector's image, or {@code null} to sample
+   *  this detector's {@link BitMatrix}
+   * @return {@link DetectorResult} encapsulating results of detecting a QR Code
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if a QR Code cannot be decoded
+   */
+  public final DetectorResult detectFromScratch(Map<DecodeHintType,?> hints,
+                                                GrayscaleGridSampler sampler)
+      throws NotFoundException, FormatException {
+    DetectionCache detectionCache = hints == null ? null :
+        (DetectionCache) hints.get(DecodeHintType.DETECTION_CACHE);
+    FinderPatternInfo info = findFinderPatterns(hints);
+    return processFinderPatternInfo(info, detectionCache, sampler);
+  }
+
+  /**
+   * <p>Locates the three finder patterns of a QR Code, without going on to sample it.</p>
+   *
+   * @param hints optional hints to detector
+   * @return {@link FinderPatternInfo} with the location of the finder patterns
+   * @throws NotFoundException if QR Code cannot be found
+   */
+  public final FinderPatternInfo findFinderPatterns(Map<DecodeHintType,?> hints) throws NotFoundException {
+    readHints(hints);
+    FinderPatternFinder finder = new FinderPatternFinder(image, resultPointCallback);
+    return finder.find(hints);
+  }
 
+  /**
+   * <p>Locates a QR Code in an image without sampling or decoding it: finds its finder patterns,
+   * estimates its module size and version, and looks for its alignment pattern. This is cheap
+   * enough to run on every frame of a video, for example to outline a code, and leave decoding
+   * to the frames in which one was located. With {@link DecodeHintType#QR_ROW_BUDGET}, the cost
+   * of the finder pattern search is bounded too.</p>
+   *
+   * @param hints optional hints to detector
+   * @return {@link QRCodeLocation} describing where the QR Code is
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if the finder patterns are too far apart for any version
+   */
+  public final QRCodeLocation locate(Map<DecodeHintType,?> hints)
+      throws NotFoundException, FormatException {
+    return locate(findFinderPatterns(hints));
+  }
+
+  /**
+   * Takes up the hints that apply to alignment and sampling as well as to the finder pattern
+   * search. Subclasses that search for finder patterns themselves call this first.
+   *
+   * @param hints optional hints to detector
+   */
+  protected final void readHints(Map<DecodeHintType,?> hints) {
     resultPointCallback = hints == null ? null :
         (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    bitPool = hints == null ? null : (BitPool) hints.get(DecodeHintType.BIT_POOL);
+  }
 
-    FinderPatternFinder finder = new FinderPatternFinder(image, resultPointCallback);
-    FinderPatternInfo info = finder.find(hints);
+  /**
+   * <p>Samples a QR Code at finder pattern locations that are already known, for example from
+   * another binarization of the same image. Only the alignment pattern search and sampling
+   * are done on this detector's image.</p>
+   *
+   * @param info finder patterns, as found by {@link #findFinderPatterns(Map)}
+   * @return {@link DetectorResult} encapsulating results of detecting a QR Code
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if a QR Code cannot be decoded
+   */
+  public final DetectorResult processFinderPatternInfo(FinderPatternInfo info)
+      throws NotFoundException, FormatException {
+    return processFinderPatternInfo(info, null, null);
+  }
 
-    return processFinderPatternInfo(info);
+  /**
+   * <p>Like {@link #processFinderPatternInfo(FinderPatternInfo)}, but first takes up the hints that
+   * apply to alignment and sampling, such as {@link DecodeHintType#BIT_POOL} to take the grid from.
+   * This is for a detector that did not search for the finder patterns itself.</p>
+   *
+   * @param info finder patterns, as found by {@link #findFinderPatterns(Map)}
+   * @param hints optional hints to detector
+   * @return {@link DetectorResult} encapsulating results of detecting a QR Code
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if a QR Code cannot be decoded
+   */
+  public final DetectorResult processFinderPatternInfo(FinderPatternInfo info,
+                                                       Map<DecodeHintType,?> hints)
+      throws NotFoundException, FormatException {
+    readHints(hints);
+    return processFinderPatternInfo(info, null, null);
   }
 
-  protected final DetectorResult processFinderPatternInfo(FinderPatternInfo info)
+  /**
+   * <p>Like {@link #processFinderPatternInfo(FinderPatternInfo)}, but samples the luminance of the
+   * image rather than this detector's {@link BitMatrix}, and thresholds each module itself. The
+   * threshold and contrast are measured at the dark and light modules of the three finder
+   * patterns, and interpolated across the code, so that uneven lighting or a poor binarization of
+   * the whole image matter less. How far each module is from its threshold, relative to that
+   * contrast, is reported as its confidence.</p>
+   *
+   * @param info finder patterns, as found by {@link #findFinderPatterns(Map)}
+   * @param sampler sampler of the luminance of this detector's image
+   * @return {@link GrayscaleDetectorResult} encapsulating results of detecting a QR Code
+   * @throws NotFoundException if QR Code cannot be found
+   * @throws FormatException if a QR Code cannot be decoded
+   */
+  public final GrayscaleDetectorResult processFinderPatternInfo(FinderPatternInfo info,
+                                                                GrayscaleGridSampler sampler)
       throws NotFoundException, FormatException {
+    return (GrayscaleDetectorResult) processFinderPatternInfo(info, null, sampler);
+  }
 
+  private DetectorResult processFinderPatternInfo(FinderPatternInfo info,
+                                                  DetectionCache detectionCache,
+                                                  GrayscaleGridSampler grayscaleSampler)
+      throws NotFoundException, FormatException {
+    QRCodeLocation location = locate(info);
+    PerspectiveTransform transform = location.getTransform();
+    int dimension = location.getProvisionalVersion().getDimensionForVersion();
+    ResultPoint[] points = location.getPoints();
+
+    DetectorResult result;
+    if (grayscaleSampler != null) {
+      int[] luminances = grayscaleSampler.sampleLuminances(dimension, dimension, transform);
+      result = thresholdModules(luminances, dimension, points);
+    } else {
+      result = new DetectorResult(sampleGrid(image, transform, dimension, bitPool), points, inverted);
+    }
+    // Cached transforms are reused as dark on light, so don't remember an inverted code
+    if (detectionCache != null && !inverted) {
+      detectionCache.update(info.getTopLeft(), info.getTopRight(), info.getBottomLeft(), transform,
+          dimension, points);
+    }
+    return result;
+  }
+
+  /**
+   * Works out everything about a code that follows from its finder patterns, short of sampling.
+   */
+  private QRCodeLocation locate(FinderPatternInfo info) throws NotFoundException, FormatException {
     FinderPattern topLeft = info.getTopLeft();
     FinderPattern topRight = info.getTopRight();
     FinderPattern bottomLeft = info.getBottomLeft();
+    inverted = info.isInverted();
 
     float moduleSize = calculateModuleSize(topLeft, topRight, bottomLeft);
     if (moduleSize < 1.0f) {
@@ -129,16 +326,79 @@ public class Detector {
 
     PerspectiveTransform transform =
         createTransform(topLeft, topRight, bottomLeft, alignmentPattern, dimension);
+    return new QRCodeLocation(info, alignmentPattern, moduleSize, provisionalVersion, transform);
+  }
 
-    BitMatrix bits = sampleGrid(image, transform, dimension);
+  /**
+   * Thresholds sampled module luminances against a plane fitted through the thresholds of the
+   * three finder patterns.
+   */
+  private GrayscaleDetectorResult thresholdModules(int[] luminances, int dimension, ResultPoint[] points)
+      throws NotFoundException {
+    // Finder pattern centers are at module 3 from the edges
+    int far = dimension - 4;
+    float[] topLeft = measureFinderPattern(luminances, dimension, 3, 3, inverted);
+    float[] topRight = measureFinderPattern(luminances, dimension, far, 3, inverted);
+    float[] bottomLeft = measureFinderPattern(luminances, dimension, 3, far, inverted);
+
+    float span = (float) (far - 3);
+    float thresholdDX = (topRight[0] - topLeft[0]) / span;
+    float thresholdDY = (bottomLeft[0] - topLeft[0]) / span;
+    float contrastDX = (topRight[1] - topLeft[1]) / span;
+    float contrastDY = (bottomLeft[1] - topLeft[1]) / span;
+
+    BitMatrix bits = bitPool == null ? new BitMatrix(dimension) : bitPool.acquireMatrix(dimension, dimension);
+    float[] confidences = new float[dimension * dimension];
+    for (int y = 0; y < dimension; y++) {
+      int offset = y * dimension;
+      for (int x = 0; x < dimension; x++) {
+        float threshold = topLeft[0] + (x - 3) * thresholdDX + (y - 3) * thresholdDY;
+        // Never let extrapolation beyond the finder patterns make the contrast vanish
+        float halfContrast = Math.max(MIN_CONTRAST, topLeft[1] + (x - 3) * contrastDX + (y - 3) * contrastDY) / 2.0f;
+        float difference = luminances[offset + x] - threshold;
+        if (difference < 0.0f) {
+          bits.set(x, y);
+        }
+        confidences[offset + x] = Math.min(1.0f, Math.abs(difference) / halfContrast);
+      }
+    }
+    return new GrayscaleDetectorResult(bits, points, confidences, inverted);
+  }
 
-    ResultPoint[] points;
-    if (alignmentPattern == null) {
-      points = new ResultPoint[]{bottomLeft, topLeft, topRight};
-    } else {
-      points = new ResultPoint[]{bottomLeft, topLeft, topRight, alignmentPattern};
+  /**
+   * Measures a finder pattern in sampled module luminances: its center 3x3 modules and outer
+   * ring are dark, the ring in between light, or the other way around if inverted.
+   *
+   * @return threshold halfway between the average dark and light luminance, and the contrast
+   *  between them
+   * @throws NotFoundException if the pattern isn't darker in the middle than around it
+   */
+  private static float[] measureFinderPattern(int[] luminances, int dimension, int centerX, int centerY,
+                                              boolean inverted)
+      throws NotFoundException {
+    int darkSum = 0;
+    int darkCount = 0;
+    int lightSum = 0;
+    int lightCount = 0;
+    for (int dy = -3; dy <= 3; dy++) {
+      int offset = (centerY + dy) * dimension + centerX;
+      for (int dx = -3; dx <= 3; dx++) {
+        int luminance = luminances[offset + dx];
+        if ((Math.max(Math.abs(dx), Math.abs(dy)) == 2) != inverted) {
+          lightSum += luminance;
+          lightCount++;
+        } else {
+          darkSum += luminance;
+          darkCount++;
+        }
+      }
+    }
+    float dark = (float) darkSum / darkCount;
+    float light = (float) lightSum / lightCount;
+    if (light - dark < MIN_CONTRAST) {
+      throw NotFoundException.getNotFoundInstance();
     }
-    return new DetectorResult(bits, points);
+    return new float[] {(dark + light) / 2.0f, light - dark};
   }
 
   private static PerspectiveTransform createTransform(ResultPoint topLeft,
@@ -185,10 +445,11 @@ public class Detector {
 
   private static BitMatrix sampleGrid(BitMatrix image,
                                       PerspectiveTransform transform,
-                                      int dimension) throws NotFoundException {
+                                      int dimension,
+                                      BitPool bitPool) throws NotFoundException {
 
     GridSampler sampler = GridSampler.getInstance();
-    return sampler.sampleGrid(image, dimension, dimension, transform);
+    return sampler.sampleGrid(image, dimension, dimension, transform, bitPool);
   }
 
   /**
@@ -298,7 +559,8 @@ public class Detector {
   /**
    * <p>This method traces a line from a point in the image, in the direction towards another point.
    * It begins in a black region, and keeps going until it finds white, then black, then white again.
-   * It reports the distance from the start to this point.</p>
+   * It reports the distance from the start to this point. For an inverted code, the colors are
+   * swapped.</p>
    *
    * <p>This is used when figuring out how wide a finder pattern is, when the finder pattern
    * may be skewed or rotated.</p>
@@ -333,7 +595,7 @@ public class Detector {
       // Does current pixel mean we have moved white to black or vice versa?
       // Scanning black in state 0,2 and white in state 1, so if we find the wrong
       // color, advance to next state or end if we are in state 2 already
-      if ((state == 1) == image.get(realX, realY)) {
+      if ((state == 1) == (image.get(realX, realY) != inverted)) {
         if (state == 2) {
           return MathUtils.distance(x, y, fromX, fromY);
         }
@@ -398,6 +660,7 @@ public class Detector {
             alignmentAreaRightX - alignmentAreaLeftX,
             alignmentAreaBottomY - alignmentAreaTopY,
             overallEstModuleSize,
+            inverted,
             resultPointCallback);
     return alignmentFinder.find();
   }
@@ -29,15 +29,21 @@ public final class FinderPattern extends ResultPoint {
 
   private final float estimatedModuleSize;
   private final int count;
+  private final boolean inverted;
 
   FinderPattern(float posX, float posY, float estimatedModuleSize) {
-    this(posX, posY, estimatedModuleSize, 1);
+    this(posX, posY, estimatedModuleSize, false);
   }
 
-  private FinderPattern(float posX, float posY, float estimatedModuleSize, int count) {
+  FinderPattern(float posX, float posY, float estimatedModuleSize, boolean inverted) {
+    this(posX, posY, estimatedModuleSize, 1, inverted);
+  }
+
+  private FinderPattern(float posX, float posY, float estimatedModuleSize, int count, boolean inverted) {
     super(posX, posY);
     this.estimatedModuleSize = estimatedModuleSize;
     this.count = count;
+    this.inverted = inverted;
   }
 
   public float getEstimatedModuleSize() {
@@ -48,6 +54,13 @@ public final class FinderPattern extends ResultPoint {
     return count;
   }
 
+  /**
+   * @return true if this pattern is light on dark: a white center and outer ring, on black
+   */
+  public boolean isInverted() {
+    return inverted;
+  }
+
   /*
   void incrementCount() {
     this.count++;
@@ -76,7 +89,7 @@ public final class FinderPattern extends ResultPoint {
     float combinedX = (count * getX() + j) / combinedCount;
     float combinedY = (count * getY() + i) / combinedCount;
     float combinedModuleSize = (count * estimatedModuleSize + newModuleSize) / combinedCount;
-    return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount);
+    return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount, inverted);
   }
 
 }
@@ -21,9 +21,11 @@ import com.google.zxing.NotFoundException;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.TaskRunner;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -42,12 +44,31 @@ public class FinderPatternFinder {
   private static final int CENTER_QUORUM = 2;
   protected static final int MIN_SKIP = 3; // 1 pixel/module times 3 modules/center
   protected static final int MAX_MODULES = 57; // support up to version 10 for mobile clients
+  // Rows that each task scans ahead of time at once, enough to be worth handing out
+  private static final int ROWS_PER_TASK = 16;
+  // Images are downsampled for a first, coarse search while their smaller side stays this large
+  private static final int MIN_COARSE_DIMENSION = 300;
+  private static final int MAX_DOWNSAMPLING = 4;
+  // How far the module size of a finder pattern may stray from the range it was expected in
+  private static final float MODULE_SIZE_TOLERANCE = 0.25f;
 
   private final BitMatrix image;
   private final List<FinderPattern> possibleCenters;
   private boolean hasSkipped;
   private final int[] crossCheckStateCount;
+  // Runs of the row being scanned, as dark-on-light and as light-on-dark patterns
+  private final int[] scanStateCount;
+  private final int[] scanInvertedCount;
+  // Run-length views of the rows being scanned, of rows and of columns being cross-checked
+  private final int[] scanTransitions;
+  private final int[] rowTransitions;
+  private final int[] columnTransitions;
   private final ResultPointCallback resultPointCallback;
+  // Range of module sizes that finder patterns are accepted in, from the hints of the last scan
+  private float minModuleSize;
+  private float maxModuleSize;
+  // Whether light-on-dark finder patterns are looked for too, from the hints of the last scan
+  private boolean alsoInverted;
 
   /**
    * <p>Creates a finder that will search the image for three finder patterns.</p>
@@ -62,7 +83,15 @@ public class FinderPatternFinder {
     this.image = image;
     this.possibleCenters = new ArrayList<>();
     this.crossCheckStateCount = new int[5];
+    this.scanStateCount = new int[5];
+    this.scanInvertedCount = new int[5];
+    this.scanTransitions = new int[image.getWidth()];
+    this.rowTransitions = new int[image.getWidth()];
+    this.columnTransitions = new int[image.getHeight()];
     this.resultPointCallback = resultPointCallback;
+    this.minModuleSize = 0.0f;
+    this.maxModuleSize = Float.POSITIVE_INFINITY;
+    this.alsoInverted = false;
   }
 
   protected final BitMatrix getImage() {
@@ -74,113 +103,422 @@ public class FinderPatternFinder {
   }
 
   final FinderPatternInfo find(Map<DecodeHintType,?> hints) throws NotFoundException {
+    findPossibleCenters(hints, true);
+    if (alsoInverted) {
+      keepLikelierPolarity();
+    }
+
+    FinderPattern[] patternInfo = selectBestPatterns();
+    ResultPoint.orderBestPatterns(patternInfo);
+
+    return new FinderPatternInfo(patternInfo);
+  }
+
+  /**
+   * Scans the image for finder patterns, leaving every candidate in {@link #getPossibleCenters()}.
+   *
+   * @param hints optional hints, such as {@link DecodeHintType#TRY_HARDER}
+   * @param adaptive if true, stop as soon as three patterns of one code are confirmed, skipping
+   *  rows that cannot hold the third one. If false, scan the whole image, to find the patterns of
+   *  several codes. With a {@link DecodeHintType#TASK_RUNNER}, rows are scanned ahead of time in
+   *  parallel, with the same outcome. If the size of the codes is hinted at, by {@link
+   *  DecodeHintType#QR_VERSION_RANGE} or {@link DecodeHintType#QR_MODULE_SIZE}, an adaptive scan
+   *  first skips as many rows as it can without stepping over a finder pattern entirely, and looks
+   *  at rows more closely only around those that cross something like one. When trying harder on a
+   *  large image, finder patterns are first looked for in a downsampled copy, and the whole image
+   *  is only scanned if that does not confirm three of them. With {@link
+   *  DecodeHintType#ALSO_INVERTED}, the same row scans look for light-on-dark patterns too, which
+   *  are kept apart from dark-on-light ones.
+   */
+  protected final void findPossibleCenters(Map<DecodeHintType,?> hints, boolean adaptive) {
     boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
     boolean pureBarcode = hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE);
     int maxI = image.getHeight();
-    int maxJ = image.getWidth();
-    // We are looking for black/white/black/white/black modules in
-    // 1:1:3:1:1 ratio; this tracks the number of such modules seen so far
+    int[] versionRange = hints == null ? null : (int[]) hints.get(DecodeHintType.QR_VERSION_RANGE);
+    float[] moduleSizeRange = hints == null ? null : (float[]) hints.get(DecodeHintType.QR_MODULE_SIZE);
+    alsoInverted = hints != null && hints.containsKey(DecodeHintType.ALSO_INVERTED);
 
     // Let's assume that the maximum version QR Code we support takes up 1/4 the height of the
     // image, and then account for the center being 3 modules in size. This gives the smallest
     // number of pixels the center could be, so skip this often. When trying harder, look for all
     // QR versions regardless of how dense they are.
-    int iSkip = (3 * maxI) / (4 * MAX_MODULES);
+    int maxModules = MAX_MODULES;
+    minModuleSize = 0.0f;
+    maxModuleSize = Float.POSITIVE_INFINITY;
+    if (versionRange != null) {
+      if (versionRange.length != 2 || versionRange[0] < 1 || versionRange[0] > versionRange[1] ||
+          versionRange[1] > 40) {
+        throw new IllegalArgumentException(
+            "Invalid QR Code version range: " + Arrays.toString(versionRange));
+      }
+      maxModules = 17 + 4 * versionRange[1];
+      // Even the smallest version expected has to fit in the image
+      maxModuleSize = (float) Math.min(image.getWidth(), maxI) / (17 + 4 * versionRange[0]);
+    }
+    int iSkip = (3 * maxI) / (4 * maxModules);
+    float smallestModuleSize = (float) maxI / (4 * maxModules);
+    if (moduleSizeRange != null) {
+      minModuleSize = moduleSizeRange[0];
+      maxModuleSize = Math.min(maxModuleSize, moduleSizeRange[1]);
+      smallestModuleSize = minModuleSize;
+      iSkip = (int) (3.0f * smallestModuleSize);
+    }
     if (iSkip < MIN_SKIP || tryHarder) {
       iSkip = MIN_SKIP;
     }
+    // However dense the codes may be, don't scan more rows than budgeted for
+    Integer rowBudget = hints == null ? null : (Integer) hints.get(DecodeHintType.QR_ROW_BUDGET);
+    int maxRows = Integer.MAX_VALUE;
+    if (rowBudget != null) {
+      maxRows = Math.max(1, rowBudget);
+      int budgetSkip = (maxI + maxRows - 1) / maxRows;
+      if (iSkip < budgetSkip) {
+        iSkip = budgetSkip;
+      }
+    }
+
+    // A row through any of the five middle module rows of a finder pattern crosses it as either
+    // 1:1:3:1:1 or 1:5:1, so rows this far apart can't all miss it. Trying harder drops the
+    // assumed size, so is only sped up this way if the size of the modules was given.
+    int coarseSkip = 0;
+    if (adaptive && (moduleSizeRange != null || (versionRange != null && !tryHarder))) {
+      coarseSkip = (int) (5.0f * smallestModuleSize) - 1;
+    }
+
+    if (tryHarder && adaptive && rowBudget == null && findCoarseToFine(pureBarcode)) {
+      return;
+    }
+    TaskRunner taskRunner = hints == null ? null : (TaskRunner) hints.get(DecodeHintType.TASK_RUNNER);
+    scanRows(iSkip - 1, maxI, iSkip, coarseSkip, maxRows, pureBarcode, adaptive, taskRunner);
+  }
 
+  /**
+   * Scans every iSkip-th row from firstRow up to endRow for finder patterns, adding what it finds
+   * to the possible centers.
+   *
+   * @param coarseSkip if larger than iSkip, scan only every coarseSkip-th row until one crosses
+   *  something like part of a finder pattern, then go back and scan every iSkip-th row from the
+   *  previous one to coarseSkip rows past it. Once a pattern is confirmed, scan every iSkip-th row
+   * @param maxRows number of rows after which to stop, wherever the scan has got to
+   * @param adaptive if true, scan like a lone finder: look at rows more closely once a pattern has
+   *  been seen, skip rows that cannot hold the third pattern, and stop when three are confirmed.
+   *  Otherwise scan exactly the given rows, so that several finders can share out an image
+   * @param taskRunner if not null, scans the rows that are likely to be needed next ahead of time
+   *  and in parallel, with finders of its own. Which rows are scanned, and what is made of them,
+   *  is still decided here one row after another, so the outcome is the same as without it
+   */
+  private void scanRows(int firstRow, int endRow, int iSkip, int coarseSkip, int maxRows,
+                        boolean pureBarcode, boolean adaptive, TaskRunner taskRunner) {
+    RowScan rowScan = new RowScan();
+    RowScan[] rowScans = null;
+    FinderPatternFinder[] rowFinders = null;
+    boolean findPartial = coarseSkip > iSkip;
     boolean done = false;
-    int[] stateCount = new int[5];
-    for (int i = iSkip - 1; i < maxI && !done; i += iSkip) {
-      // Get a row of black/white values
-      stateCount[0] = 0;
-      stateCount[1] = 0;
-      stateCount[2] = 0;
-      stateCount[3] = 0;
-      stateCount[4] = 0;
-      int currentState = 0;
-      for (int j = 0; j < maxJ; j++) {
-        if (image.get(j, i)) {
-          // Black pixel
-          if ((currentState & 1) == 1) { // Counting white pixels
-            currentState++;
+    // Rows up to refineEnd are near a partial match, and scanned every iSkip-th row, except the
+    // row with the match itself, which has been scanned already
+    int refineEnd = firstRow;
+    int partialRow = -1;
+    int rowsScanned = 0;
+    for (int i = firstRow; i < endRow && !done && rowsScanned < maxRows;
+         i += coarseSkip <= iSkip || i < refineEnd ? iSkip : coarseSkip) {
+      if (i == partialRow) {
+        continue;
+      }
+      rowsScanned++;
+      if (taskRunner == null) {
+        scanRow(i, pureBarcode, coarseSkip > iSkip, rowScan);
+      } else {
+        if (rowScans == null) {
+          // Row finders share the image, so finish any lazy work on it before they start
+          image.getTransposed();
+          rowScans = new RowScan[endRow];
+          rowFinders = new FinderPatternFinder[Math.max(1, taskRunner.getParallelism())];
+          for (int k = 0; k < rowFinders.length; k++) {
+            rowFinders[k] = new FinderPatternFinder(image);
+            rowFinders[k].minModuleSize = minModuleSize;
+            rowFinders[k].maxModuleSize = maxModuleSize;
+            rowFinders[k].alsoInverted = alsoInverted;
           }
-          stateCount[currentState]++;
-        } else { // White pixel
-          if ((currentState & 1) == 0) { // Counting black pixels
-            if (currentState == 4) { // A winner?
-              if (foundPatternCross(stateCount)) { // Yes
-                boolean confirmed = handlePossibleCenter(stateCount, i, j, pureBarcode);
-                if (confirmed) {
-                  // Start examining every other line. Checking each line turned out to be too
-                  // expensive and didn't improve performance.
-                  iSkip = 2;
-                  if (hasSkipped) {
-                    done = haveMultiplyConfirmedCenters();
-                  } else {
-                    int rowSkip = findRowSkip();
-                    if (rowSkip > stateCount[2]) {
-                      // Skip rows between row of lower confirmed center
-                      // and top of presumed third confirmed center
-                      // but back up a bit to get a full chance of detecting
-                      // it, entire width of center of finder pattern
-
-                      // Skip by rowSkip, but back off by stateCount[2] (size of last center
-                      // of pattern we saw) to be conservative, and also back off by iSkip which
-                      // is about to be re-added
-                      i += rowSkip - stateCount[2] - iSkip;
-                      j = maxJ - 1;
-                    }
-                  }
-                } else {
-                  stateCount[0] = stateCount[2];
-                  stateCount[1] = stateCount[3];
-                  stateCount[2] = stateCount[4];
-                  stateCount[3] = 1;
-                  stateCount[4] = 0;
-                  currentState = 3;
-                  continue;
-                }
+        }
+        if (rowScans[i] == null) {
+          // Guess that the rows will go on being scanned this far apart
+          int step = coarseSkip <= iSkip || i < refineEnd ? iSkip : coarseSkip;
+          scanAhead(i, step, endRow, maxRows - rowsScanned + 1, pureBarcode, findPartial,
+              rowScans, rowFinders, taskRunner);
+        }
+        rowScan = rowScans[i];
+      }
+      for (int p = 0; p < rowScan.size; p++) {
+        addCenter(rowScan.patterns[p]);
+        if (!adaptive) {
+          continue;
+        }
+        if (rowScan.endsRow && p == rowScan.size - 1) {
+          iSkip = rowScan.skipRuns[p];
+          coarseSkip = 0;
+          if (hasSkipped) {
+            // Found a third one
+            done = haveMultiplyConfirmedCenters();
+          }
+          break;
+        }
+        // Start examining every other line. Checking each line turned out to be too
+        // expensive and didn't improve performance.
+        iSkip = 2;
+        coarseSkip = 0;
+        if (hasSkipped) {
+          done = haveMultiplyConfirmedCenters();
+        } else {
+          int rowSkip = findRowSkip();
+          int centerRun = rowScan.skipRuns[p];
+          if (rowSkip > centerRun) {
+            // Skip rows between row of lower confirmed center
+            // and top of presumed third confirmed center
+            // but back up a bit to get a full chance of detecting
+            // it, entire width of center of finder pattern
+
+            // Skip by rowSkip, but back off by centerRun (size of last center
+            // of pattern we saw) to be conservative, and also back off by iSkip which
+            // is about to be re-added. The rest of the row is skipped too
+            i += rowSkip - centerRun - iSkip;
+            break;
+          }
+        }
+      }
+      if (rowScan.partial && coarseSkip > iSkip) {
+        if (i < refineEnd) {
+          refineEnd = Math.max(refineEnd, i + coarseSkip);
+        } else {
+          // The pattern may be centered anywhere from the last coarse row to the next, so go
+          // back and scan the rows in between closely
+          refineEnd = i + coarseSkip;
+          partialRow = i;
+          i = Math.max(i - coarseSkip, firstRow - iSkip);
+        }
+      }
+    }
+  }
+
+  /**
+   * Scans, through the given runner, the rows from firstRow on, step rows apart, that have not
+   * been scanned yet, as many as the row finders can take on at once, up to maxRows of them.
+   */
+  private static void scanAhead(int firstRow, int step, int endRow, int maxRows,
+                                final boolean pureBarcode, final boolean findPartial,
+                                final RowScan[] rowScans, FinderPatternFinder[] rowFinders,
+                                TaskRunner taskRunner) {
+    int[] rows = new int[Math.min(maxRows, rowFinders.length * ROWS_PER_TASK)];
+    int numRows = 0;
+    for (int i = firstRow; i < endRow && numRows < rows.length; i += step) {
+      if (rowScans[i] == null) {
+        rows[numRows++] = i;
+      }
+    }
+    int numTasks = Math.min(rowFinders.length, (numRows + ROWS_PER_TASK - 1) / ROWS_PER_TASK);
+    Runnable[] tasks = new Runnable[numTasks];
+    for (int task = 0; task < numTasks; task++) {
+      final int[] taskRows = Arrays.copyOfRange(rows, numRows * task / numTasks,
+          numRows * (task + 1) / numTasks);
+      final FinderPatternFinder rowFinder = rowFinders[task];
+      tasks[task] = new Runnable() {
+        @Override
+        public void run() {
+          for (int i : taskRows) {
+            RowScan rowScan = new RowScan();
+            rowFinder.scanRow(i, pureBarcode, findPartial, rowScan);
+            rowScans[i] = rowScan;
+          }
+        }
+      };
+    }
+    taskRunner.runAll(tasks);
+  }
+
+  /**
+   * Scans row i for finder patterns, cross-checking any it crosses. What is found depends only on
+   * the row, not on what this finder has found so far, so rows can be scanned by one finder and
+   * the patterns added to the possible centers of another.
+   *
+   * @param findPartial whether to note if the row crosses something like part of a finder
+   *  pattern of an expected size
+   */
+  private void scanRow(int i, boolean pureBarcode, boolean findPartial, RowScan result) {
+    result.clear();
+    int maxJ = image.getWidth();
+    int[] transitions = scanTransitions;
+    // We are looking for black/white/black/white/black modules in
+    // 1:1:3:1:1 ratio; this tracks the number of such modules seen so far
+    int[] stateCount = scanStateCount;
+    // The last five runs, which are a light-on-dark pattern if they match 1:1:3:1:1 and end white
+    int[] invertedCount = scanInvertedCount;
+    stateCount[0] = 0;
+    stateCount[1] = 0;
+    stateCount[2] = 0;
+    stateCount[3] = 0;
+    stateCount[4] = 0;
+    int currentState = 0;
+    invertedCount[0] = 0;
+    invertedCount[1] = 0;
+    invertedCount[2] = 0;
+    invertedCount[3] = 0;
+    invertedCount[4] = 0;
+    // Walk the row a run at a time; runs alternate white and black, starting with white
+    int numTransitions = image.getRowTransitions(i, transitions);
+    int runStart = 0;
+    for (int run = 0; run <= numTransitions; run++) {
+      int runEnd = run < numTransitions ? transitions[run] : maxJ;
+      int runLength = runEnd - runStart;
+      if (alsoInverted && runLength > 0) {
+        invertedCount[0] = invertedCount[1];
+        invertedCount[1] = invertedCount[2];
+        invertedCount[2] = invertedCount[3];
+        invertedCount[3] = invertedCount[4];
+        invertedCount[4] = runLength;
+        if ((run & 1) == 0 && foundPatternCross(invertedCount)) {
+          FinderPattern pattern = crossCheckCenter(invertedCount, i, runEnd, pureBarcode, true);
+          if (pattern != null) {
+            result.add(pattern, invertedCount[2]);
+          }
+        }
+        if (findPartial && !result.partial && (run & 1) == 0) {
+          result.partial = foundPartialMatch(invertedCount);
+        }
+      }
+      if ((run & 1) == 1) {
+        // Black run
+        if ((currentState & 1) == 1) { // Counting white pixels
+          currentState++;
+        }
+        stateCount[currentState] += runLength;
+      } else if (runLength > 0) { // White run; only the first can be empty
+        if ((currentState & 1) == 0) { // Counting black pixels
+          if (currentState == 4) { // A winner?
+            if (foundPatternCross(stateCount)) { // Yes
+              FinderPattern pattern = crossCheckCenter(stateCount, i, runStart, pureBarcode, false);
+              if (pattern != null) {
+                result.add(pattern, stateCount[2]);
                 // Clear state to start looking again
-                currentState = 0;
                 stateCount[0] = 0;
                 stateCount[1] = 0;
                 stateCount[2] = 0;
                 stateCount[3] = 0;
                 stateCount[4] = 0;
-              } else { // No, shift counts back by two
-                stateCount[0] = stateCount[2];
-                stateCount[1] = stateCount[3];
-                stateCount[2] = stateCount[4];
-                stateCount[3] = 1;
-                stateCount[4] = 0;
-                currentState = 3;
+                currentState = 0;
+                // The first white pixel ended the pattern; the rest of the run starts a new one
+                if (runLength > 1) {
+                  currentState = 1;
+                  stateCount[1] = runLength - 1;
+                }
+                runStart = runEnd;
+                continue;
               }
-            } else {
-              stateCount[++currentState]++;
             }
-          } else { // Counting white pixels
-            stateCount[currentState]++;
+            if (findPartial && !result.partial) {
+              result.partial = foundPartialMatch(stateCount);
+            }
+            // No, shift counts back by two
+            stateCount[0] = stateCount[2];
+            stateCount[1] = stateCount[3];
+            stateCount[2] = stateCount[4];
+            stateCount[3] = runLength;
+            stateCount[4] = 0;
+            currentState = 3;
+          } else {
+            stateCount[++currentState] += runLength;
           }
+        } else { // Counting white pixels
+          stateCount[currentState] += runLength;
         }
       }
-      if (foundPatternCross(stateCount)) {
-        boolean confirmed = handlePossibleCenter(stateCount, i, maxJ, pureBarcode);
-        if (confirmed) {
-          iSkip = stateCount[0];
-          if (hasSkipped) {
-            // Found a third one
-            done = haveMultiplyConfirmedCenters();
-          }
+      runStart = runEnd;
+    }
+    if (foundPatternCross(stateCount)) {
+      FinderPattern pattern = crossCheckCenter(stateCount, i, maxJ, pureBarcode, false);
+      if (pattern != null) {
+        result.add(pattern, stateCount[0]);
+        result.endsRow = true;
+      }
+    }
+  }
+
+  /**
+   * Looks for large finder patterns in a copy of the image downsampled by 2 or 4, which is much
+   * cheaper to scan, then checks each one found at full resolution, through the middle rows of
+   * its center, as a full scan would have. Small patterns that the copy blurs away are left to
+   * the full scan that follows if this fails.
+   *
+   * @return true if three patterns were confirmed; otherwise, no candidates are kept
+   */
+  private boolean findCoarseToFine(boolean pureBarcode) {
+    BitMatrix coarse = image;
+    int factor = 1;
+    while (factor < MAX_DOWNSAMPLING &&
+           Math.min(coarse.getWidth(), coarse.getHeight()) >= 2 * MIN_COARSE_DIMENSION) {
+      coarse = coarse.getDownsampled();
+      factor <<= 1;
+    }
+    if (factor == 1) {
+      return false;
+    }
+
+    FinderPatternFinder coarseFinder = new FinderPatternFinder(coarse);
+    coarseFinder.minModuleSize = minModuleSize / factor;
+    coarseFinder.maxModuleSize = maxModuleSize / factor;
+    coarseFinder.alsoInverted = alsoInverted;
+    coarseFinder.scanRows(MIN_SKIP - 1, coarse.getHeight(), MIN_SKIP, 0, Integer.MAX_VALUE,
+        pureBarcode, false, null);
+
+    int maxI = image.getHeight();
+    int[] stateCount = new int[5];
+    for (FinderPattern candidate : coarseFinder.possibleCenters) {
+      float moduleSize = candidate.getEstimatedModuleSize() * factor;
+      int centerI = (int) (candidate.getY() * factor);
+      int centerJ = (int) (candidate.getX() * factor);
+      // Generous, as the coarse estimate is off by up to a coarse pixel per run
+      int maxCount = (int) (3.0f * moduleSize) + factor;
+      for (int row = -1; row <= 1; row++) {
+        int i = centerI + (int) (row * moduleSize);
+        if (i >= 0 && i < maxI) {
+          refineCandidate(i, centerJ, maxCount, stateCount, pureBarcode, candidate.isInverted());
         }
       }
     }
 
-    FinderPattern[] patternInfo = selectBestPatterns();
-    ResultPoint.orderBestPatterns(patternInfo);
+    int confirmedCount = 0;
+    int confirmedInvertedCount = 0;
+    for (FinderPattern center : possibleCenters) {
+      if (center.getCount() >= CENTER_QUORUM) {
+        if (center.isInverted()) {
+          confirmedInvertedCount++;
+        } else {
+          confirmedCount++;
+        }
+      }
+    }
+    if (confirmedCount >= 3 || confirmedInvertedCount >= 3) {
+      return true;
+    }
+    possibleCenters.clear();
+    return false;
+  }
 
-    return new FinderPatternInfo(patternInfo);
+  /**
+   * Reads the runs of row i around column j, and if they look like a finder pattern of the given
+   * polarity, handles it as though a row scan had found it there.
+   */
+  private void refineCandidate(int i, int j, int maxCount, int[] stateCount, boolean pureBarcode,
+                               boolean inverted) {
+    int numTransitions = image.getRowTransitions(i, rowTransitions);
+    stateCount[0] = 0;
+    stateCount[1] = 0;
+    stateCount[2] = 0;
+    stateCount[3] = 0;
+    stateCount[4] = 0;
+    int end = crossCheckRuns(rowTransitions, numTransitions, image.getWidth(), j, maxCount, inverted,
+        stateCount);
+    if (end >= 0 && foundPatternCross(stateCount)) {
+      handlePossibleCenter(stateCount, i, end, pureBarcode, inverted);
+    }
   }
 
   /**
@@ -219,6 +557,37 @@ public class FinderPatternFinder {
         Math.abs(moduleSize - stateCount[4]) < maxVariance;
   }
 
+  /**
+   * @param stateCount count of black/white/black/white/black pixels just read, that did not turn
+   *  out to be a finder pattern
+   * @return true iff the counts are close enough to 1/1/3/1/1, or the first three to the 1/5/1
+   *         of a row through a finder pattern above or below its center, with modules of an
+   *         expected size, for a finder pattern to be nearby
+   */
+  private boolean foundPartialMatch(int[] stateCount) {
+    if (foundPatternCross(stateCount)) {
+      int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
+          stateCount[4];
+      return isExpectedModuleSize(stateCountTotal / 7.0f);
+    }
+    float moduleSize = (stateCount[0] + stateCount[1] + stateCount[2]) / 7.0f;
+    float maxVariance = moduleSize / 2.0f;
+    return
+        isExpectedModuleSize(moduleSize) &&
+        Math.abs(moduleSize - stateCount[0]) < maxVariance &&
+        Math.abs(5.0f * moduleSize - stateCount[1]) < 4 * maxVariance &&
+        Math.abs(moduleSize - stateCount[2]) < maxVariance;
+  }
+
+  /**
+   * @return true iff a finder pattern with modules of this size could belong to a code of the
+   *         size hinted at
+   */
+  private boolean isExpectedModuleSize(float moduleSize) {
+    return moduleSize >= (1.0f - MODULE_SIZE_TOLERANCE) * minModuleSize &&
+        moduleSize <= (1.0f + MODULE_SIZE_TOLERANCE) * maxModuleSize;
+  }
+
   private int[] getCrossCheckStateCount() {
     crossCheckStateCount[0] = 0;
     crossCheckStateCount[1] = 0;
@@ -238,14 +607,16 @@ public class FinderPatternFinder {
    * @param maxCount maximum reasonable number of modules that should be
    *  observed in any reading state, based on the results of the horizontal scan
    * @param originalStateCountTotal The original state count total.
+   * @param inverted true to look for a light-on-dark pattern
    * @return true if proportions are withing expected limits
    */
-  private boolean crossCheckDiagonal(int startI, int centerJ, int maxCount, int originalStateCountTotal) {
+  private boolean crossCheckDiagonal(int startI, int centerJ, int maxCount, int originalStateCountTotal,
+                                     boolean inverted) {
     int[] stateCount = getCrossCheckStateCount();
 
     // Start counting up, left from center finding black center mass
     int i = 0;
-    while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i)) {
+    while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i) != inverted) {
       stateCount[2]++;
       i++;
     }
@@ -255,7 +626,7 @@ public class FinderPatternFinder {
     }
 
     // Continue up, left finding white space
-    while (startI >= i && centerJ >= i && !image.get(centerJ - i, startI - i) &&
+    while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i) == inverted &&
            stateCount[1] <= maxCount) {
       stateCount[1]++;
       i++;
@@ -267,7 +638,7 @@ public class FinderPatternFinder {
     }
 
     // Continue up, left finding black border
-    while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i) &&
+    while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i) != inverted &&
            stateCount[0] <= maxCount) {
       stateCount[0]++;
       i++;
@@ -281,7 +652,7 @@ public class FinderPatternFinder {
 
     // Now also count down, right from center
     i = 1;
-    while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i)) {
+    while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i) != inverted) {
       stateCount[2]++;
       i++;
     }
@@ -291,7 +662,7 @@ public class FinderPatternFinder {
        return false;
     }
 
-    while (startI + i < maxI && centerJ + i < maxJ && !image.get(centerJ + i, startI + i) &&
+    while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i) == inverted &&
            stateCount[3] < maxCount) {
       stateCount[3]++;
       i++;
@@ -301,7 +672,7 @@ public class FinderPatternFinder {
       return false;
     }
 
-    while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i) &&
+    while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i) != inverted &&
            stateCount[4] < maxCount) {
       stateCount[4]++;
       i++;
@@ -328,69 +699,31 @@ public class FinderPatternFinder {
    * @param centerJ center of the section that appears to cross a finder pattern
    * @param maxCount maximum reasonable number of modules that should be
    * observed in any reading state, based on the results of the horizontal scan
+   * @param inverted true to look for a light-on-dark pattern
    * @return vertical center of finder pattern, or {@link Float#NaN} if not found
    */
   private float crossCheckVertical(int startI, int centerJ, int maxCount,
-      int originalStateCountTotal) {
-    BitMatrix image = this.image;
-
-    int maxI = image.getHeight();
+      int originalStateCountTotal, boolean inverted) {
+    // A pattern that ends farther from startI than this is too large to be accepted below, so
+    // the column needn't be read any farther
+    int reach = 2 * originalStateCountTotal;
+    int top = Math.max(0, startI - reach);
+    int bottom = Math.min(image.getHeight(), startI + reach + 1);
     int[] stateCount = getCrossCheckStateCount();
-
-    // Start counting up from center
-    int i = startI;
-    while (i >= 0 && image.get(centerJ, i)) {
-      stateCount[2]++;
-      i--;
-    }
+    int numTransitions = image.getColumnTransitions(centerJ, top, bottom, columnTransitions);
+    int i = crossCheckRuns(columnTransitions, numTransitions, bottom - top, startI - top, maxCount,
+        inverted, stateCount);
     if (i < 0) {
       return Float.NaN;
     }
-    while (i >= 0 && !image.get(centerJ, i) && stateCount[1] <= maxCount) {
-      stateCount[1]++;
-      i--;
-    }
-    // If already too many modules in this state or ran off the edge:
-    if (i < 0 || stateCount[1] > maxCount) {
-      return Float.NaN;
-    }
-    while (i >= 0 && image.get(centerJ, i) && stateCount[0] <= maxCount) {
-      stateCount[0]++;
-      i--;
-    }
-    if (stateCount[0] > maxCount) {
-      return Float.NaN;
-    }
-
-    // Now also count down from center
-    i = startI + 1;
-    while (i < maxI && image.get(centerJ, i)) {
-      stateCount[2]++;
-      i++;
-    }
-    if (i == maxI) {
-      return Float.NaN;
-    }
-    while (i < maxI && !image.get(centerJ, i) && stateCount[3] < maxCount) {
-      stateCount[3]++;
-      i++;
-    }
-    if (i == maxI || stateCount[3] >= maxCount) {
-      return Float.NaN;
-    }
-    while (i < maxI && image.get(centerJ, i) && stateCount[4] < maxCount) {
-      stateCount[4]++;
-      i++;
-    }
-    if (stateCount[4] >= maxCount) {
-      return Float.NaN;
-    }
+    i += top;
 
     // If we found a finder-pattern-like section, but its size is more than 40% different than
     // the original, assume it's a false positive
     int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
         stateCount[4];
-    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= 2 * originalStateCountTotal) {
+    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= 2 * originalStateCountTotal ||
+        !isExpectedModuleSize(stateCountTotal / 7.0f)) {
       return Float.NaN;
     }
 
@@ -398,72 +731,123 @@ public class FinderPatternFinder {
   }
 
   /**
-   * <p>Like {@link #crossCheckVertical(int, int, int, int)}, and in fact is basically identical,
+   * <p>Like {@link #crossCheckVertical(int, int, int, int, boolean)}, and in fact is basically identical,
    * except it reads horizontally instead of vertically. This is used to cross-cross
    * check a vertical cross check and locate the real center of the alignment pattern.</p>
    */
   private float crossCheckHorizontal(int startJ, int centerI, int maxCount,
-      int originalStateCountTotal) {
-    BitMatrix image = this.image;
-
-    int maxJ = image.getWidth();
+      int originalStateCountTotal, boolean inverted) {
     int[] stateCount = getCrossCheckStateCount();
-
-    int j = startJ;
-    while (j >= 0 && image.get(j, centerI)) {
-      stateCount[2]++;
-      j--;
-    }
+    int numTransitions = image.getRowTransitions(centerI, rowTransitions);
+    int j = crossCheckRuns(rowTransitions, numTransitions, image.getWidth(), startJ, maxCount, inverted,
+        stateCount);
     if (j < 0) {
       return Float.NaN;
     }
-    while (j >= 0 && !image.get(j, centerI) && stateCount[1] <= maxCount) {
-      stateCount[1]++;
-      j--;
-    }
-    if (j < 0 || stateCount[1] > maxCount) {
+
+    // If we found a finder-pattern-like section, but its size is significantly different than
+    // the original, assume it's a false positive
+    int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
+        stateCount[4];
+    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= originalStateCountTotal ||
+        !isExpectedModuleSize(stateCountTotal / 7.0f)) {
       return Float.NaN;
     }
-    while (j >= 0 && image.get(j, centerI) && stateCount[0] <= maxCount) {
-      stateCount[0]++;
-      j--;
+
+    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, j) : Float.NaN;
+  }
+
+  /**
+   * Reads the black/white/black/white/black runs around a point of a row or column, given its
+   * transitions as returned by {@link BitMatrix#getRowTransitions(int, int[])}. The black run at
+   * {@code start}, or white run if inverted, fills the center count; the runs on either side must
+   * end before the edge, and all but the center are limited by {@code maxCount}, exactly as a
+   * pixel by pixel cross-check.
+   *
+   * @param transitions positions at which the line changes color
+   * @param numTransitions number of entries of transitions in use
+   * @param length length of the line
+   * @param start position where a finder pattern was detected
+   * @param maxCount maximum reasonable number of modules that should be
+   *  observed in any reading state, based on the results of the horizontal scan
+   * @param inverted true to read white/black/white/black/white runs instead
+   * @param stateCount array, cleared by the caller, to record the five run lengths in
+   * @return position just past the last run, or -1 if no pattern was read
+   */
+  private static int crossCheckRuns(int[] transitions, int numTransitions, int length, int start,
+                                    int maxCount, boolean inverted, int[] stateCount) {
+    // Step back a run at a time. index counts the transitions at or before pos, so pixel pos is
+    // black iff index is odd, and its run starts at transitions[index - 1], or 0 if index is 0
+    int pos = start;
+    int index = transitionsUpTo(transitions, numTransitions, pos);
+    if (((index & 1) == 1) != inverted) {
+      int runStart = index > 0 ? transitions[index - 1] : 0;
+      stateCount[2] = pos - runStart + 1;
+      pos = runStart - 1;
+      index--;
     }
-    if (stateCount[0] > maxCount) {
-      return Float.NaN;
+    if (pos < 0) {
+      return -1;
     }
-
-    j = startJ + 1;
-    while (j < maxJ && image.get(j, centerI)) {
-      stateCount[2]++;
-      j++;
+    int runStart = index > 0 ? transitions[index - 1] : 0;
+    stateCount[1] = pos - runStart + 1;
+    if (runStart == 0 || stateCount[1] > maxCount) {
+      return -1;
     }
-    if (j == maxJ) {
-      return Float.NaN;
+    pos = runStart - 1;
+    index--;
+    runStart = index > 0 ? transitions[index - 1] : 0;
+    stateCount[0] = pos - runStart + 1;
+    if (stateCount[0] > maxCount) {
+      return -1;
     }
-    while (j < maxJ && !image.get(j, centerI) && stateCount[3] < maxCount) {
-      stateCount[3]++;
-      j++;
+
+    // Now step forward; here a run ends at transitions[index], or at length past the last one
+    pos = start + 1;
+    if (pos == length) {
+      return -1;
     }
-    if (j == maxJ || stateCount[3] >= maxCount) {
-      return Float.NaN;
+    index = transitionsUpTo(transitions, numTransitions, pos);
+    if (((index & 1) == 1) != inverted) {
+      int runEnd = index < numTransitions ? transitions[index] : length;
+      stateCount[2] += runEnd - pos;
+      pos = runEnd;
+      index++;
+      if (pos == length) {
+        return -1;
+      }
     }
-    while (j < maxJ && image.get(j, centerI) && stateCount[4] < maxCount) {
-      stateCount[4]++;
-      j++;
+    int runEnd = index < numTransitions ? transitions[index] : length;
+    stateCount[3] = runEnd - pos;
+    if (runEnd == length || stateCount[3] >= maxCount) {
+      return -1;
     }
+    pos = runEnd;
+    index++;
+    runEnd = index < numTransitions ? transitions[index] : length;
+    stateCount[4] = runEnd - pos;
     if (stateCount[4] >= maxCount) {
-      return Float.NaN;
+      return -1;
     }
+    return runEnd;
+  }
 
-    // If we found a finder-pattern-like section, but its size is significantly different than
-    // the original, assume it's a false positive
-    int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
-        stateCount[4];
-    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= originalStateCountTotal) {
-      return Float.NaN;
+  /**
+   * @return number of the first numTransitions entries of {@code transitions} that are at most x,
+   *         found by binary search
+   */
+  private static int transitionsUpTo(int[] transitions, int numTransitions, int x) {
+    int low = 0;
+    int high = numTransitions;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (transitions[mid] <= x) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
     }
-
-    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, j) : Float.NaN;
+    return low;
   }
 
   /**
@@ -485,44 +869,79 @@ public class FinderPatternFinder {
    * @return true if a finder pattern candidate was found this time
    */
   protected final boolean handlePossibleCenter(int[] stateCount, int i, int j, boolean pureBarcode) {
+    return handlePossibleCenter(stateCount, i, j, pureBarcode, false);
+  }
+
+  /**
+   * Like {@link #handlePossibleCenter(int[], int, int, boolean)}, for a pattern of either
+   * polarity; if inverted, the counts are of white/black/white/black/white pixels.
+   */
+  private boolean handlePossibleCenter(int[] stateCount, int i, int j, boolean pureBarcode,
+                                       boolean inverted) {
+    FinderPattern pattern = crossCheckCenter(stateCount, i, j, pureBarcode, inverted);
+    if (pattern == null) {
+      return false;
+    }
+    addCenter(pattern);
+    return true;
+  }
+
+  /**
+   * Cross-checks a possible finder pattern as described for
+   * {@link #handlePossibleCenter(int[], int, int, boolean)}, without adding it anywhere.
+   *
+   * @return the pattern, counted once, or null if it does not pass the checks
+   */
+  private FinderPattern crossCheckCenter(int[] stateCount, int i, int j, boolean pureBarcode,
+                                         boolean inverted) {
     int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
         stateCount[4];
+    if (!isExpectedModuleSize(stateCountTotal / 7.0f)) {
+      return null;
+    }
     float centerJ = centerFromEnd(stateCount, j);
-    float centerI = crossCheckVertical(i, (int) centerJ, stateCount[2], stateCountTotal);
+    float centerI = crossCheckVertical(i, (int) centerJ, stateCount[2], stateCountTotal, inverted);
     if (!Float.isNaN(centerI)) {
       // Re-cross check
-      centerJ = crossCheckHorizontal((int) centerJ, (int) centerI, stateCount[2], stateCountTotal);
+      centerJ = crossCheckHorizontal((int) centerJ, (int) centerI, stateCount[2], stateCountTotal, inverted);
       if (!Float.isNaN(centerJ) &&
-          (!pureBarcode || crossCheckDiagonal((int) centerI, (int) centerJ, stateCount[2], stateCountTotal))) {
+          (!pureBarcode ||
+           crossCheckDiagonal((int) centerI, (int) centerJ, stateCount[2], stateCountTotal, inverted))) {
         float estimatedModuleSize = (float) stateCountTotal / 7.0f;
-        boolean found = false;
-        for (int index = 0; index < possibleCenters.size(); index++) {
-          FinderPattern center = possibleCenters.get(index);
-          // Look for about the same center and module size:
-          if (center.aboutEquals(estimatedModuleSize, centerI, centerJ)) {
-            possibleCenters.set(index, center.combineEstimate(centerI, centerJ, estimatedModuleSize));
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
-          FinderPattern point = new FinderPattern(centerJ, centerI, estimatedModuleSize);
-          possibleCenters.add(point);
-          if (resultPointCallback != null) {
-            resultPointCallback.foundPossibleResultPoint(point);
-          }
-        }
-        return true;
+        return new FinderPattern(centerJ, centerI, estimatedModuleSize, inverted);
       }
     }
-    return false;
+    return null;
+  }
+
+  /**
+   * Adds a cross-checked finder pattern to the possible centers, as one more estimate of a
+   * candidate at about the same place, or as a new candidate.
+   */
+  private void addCenter(FinderPattern pattern) {
+    float centerI = pattern.getY();
+    float centerJ = pattern.getX();
+    float estimatedModuleSize = pattern.getEstimatedModuleSize();
+    for (int index = 0; index < possibleCenters.size(); index++) {
+      FinderPattern center = possibleCenters.get(index);
+      // Look for about the same center, module size and polarity:
+      if (center.isInverted() == pattern.isInverted() &&
+          center.aboutEquals(estimatedModuleSize, centerI, centerJ)) {
+        possibleCenters.set(index, center.combineEstimate(centerI, centerJ, estimatedModuleSize));
+        return;
+      }
+    }
+    possibleCenters.add(pattern);
+    if (resultPointCallback != null) {
+      resultPointCallback.foundPossibleResultPoint(pattern);
+    }
   }
 
   /**
    * @return number of rows we could safely skip during scanning, based on the first
-   *         two finder patterns that have been located. In some cases their position will
-   *         allow us to infer that the third pattern must lie below a certain point farther
-   *         down in the image.
+   *         two finder patterns of the same polarity that have been located. In some cases their
+   *         position will allow us to infer that the third pattern must lie below a certain point
+   *         farther down in the image.
    */
   private int findRowSkip() {
     int max = possibleCenters.size();
@@ -530,10 +949,16 @@ public class FinderPatternFinder {
       return 0;
     }
     ResultPoint firstConfirmedCenter = null;
+    ResultPoint firstConfirmedInvertedCenter = null;
     for (FinderPattern center : possibleCenters) {
       if (center.getCount() >= CENTER_QUORUM) {
-        if (firstConfirmedCenter == null) {
-          firstConfirmedCenter = center;
+        ResultPoint firstConfirmed = center.isInverted() ? firstConfirmedInvertedCenter : firstConfirmedCenter;
+        if (firstConfirmed == null) {
+          if (center.isInverted()) {
+            firstConfirmedInvertedCenter = center;
+          } else {
+            firstConfirmedCenter = center;
+          }
         } else {
           // We have two confirmed centers
           // How far down can we skip before resuming looking for the next
@@ -541,8 +966,8 @@ public class FinderPatternFinder {
           // difference in the x / y coordinates of the two centers.
           // This is the case where you find top left last.
           hasSkipped = true;
-          return (int) (Math.abs(firstConfirmedCenter.getX() - center.getX()) -
-              Math.abs(firstConfirmedCenter.getY() - center.getY())) / 2;
+          return (int) (Math.abs(firstConfirmed.getX() - center.getX()) -
+              Math.abs(firstConfirmed.getY() - center.getY())) / 2;
         }
       }
     }
@@ -550,18 +975,25 @@ public class FinderPatternFinder {
   }
 
   /**
-   * @return true iff we have found at least 3 finder patterns that have been detected
-   *         at least {@link #CENTER_QUORUM} times each, and, the estimated module size of the
-   *         candidates is "pretty similar"
+   * @return true iff we have found at least 3 finder patterns of one polarity that have been
+   *         detected at least {@link #CENTER_QUORUM} times each, and, the estimated module size
+   *         of the candidates is "pretty similar"
    */
   private boolean haveMultiplyConfirmedCenters() {
+    return haveMultiplyConfirmedCenters(false) || (alsoInverted && haveMultiplyConfirmedCenters(true));
+  }
+
+  private boolean haveMultiplyConfirmedCenters(boolean inverted) {
     int confirmedCount = 0;
     float totalModuleSize = 0.0f;
-    int max = possibleCenters.size();
+    int max = 0;
     for (FinderPattern pattern : possibleCenters) {
-      if (pattern.getCount() >= CENTER_QUORUM) {
-        confirmedCount++;
-        totalModuleSize += pattern.getEstimatedModuleSize();
+      if (pattern.isInverted() == inverted) {
+        max++;
+        if (pattern.getCount() >= CENTER_QUORUM) {
+          confirmedCount++;
+          totalModuleSize += pattern.getEstimatedModuleSize();
+        }
       }
     }
     if (confirmedCount < 3) {
@@ -574,11 +1006,38 @@ public class FinderPatternFinder {
     float average = totalModuleSize / (float) max;
     float totalDeviation = 0.0f;
     for (FinderPattern pattern : possibleCenters) {
-      totalDeviation += Math.abs(pattern.getEstimatedModuleSize() - average);
+      if (pattern.isInverted() == inverted) {
+        totalDeviation += Math.abs(pattern.getEstimatedModuleSize() - average);
+      }
     }
     return totalDeviation <= 0.05f * totalModuleSize;
   }
 
+  /**
+   * Drops the candidates of whichever polarity the code is less likely to have, so that the
+   * patterns selected are all dark on light or all light on dark: the polarity with fewer
+   * confirmed candidates, or, if that is a tie, with fewer candidates at all.
+   */
+  private void keepLikelierPolarity() {
+    // Inverted candidates count up, others down
+    int confirmedBalance = 0;
+    int balance = 0;
+    for (FinderPattern center : possibleCenters) {
+      int vote = center.isInverted() ? 1 : -1;
+      balance += vote;
+      if (center.getCount() >= CENTER_QUORUM) {
+        confirmedBalance += vote;
+      }
+    }
+    boolean inverted = confirmedBalance > 0 || (confirmedBalance == 0 && balance > 0);
+    for (int i = 0; i < possibleCenters.size(); i++) {
+      if (possibleCenters.get(i).isInverted() != inverted) {
+        possibleCenters.remove(i);
+        i--;
+      }
+    }
+  }
+
   /**
    * @return the 3 best {@link FinderPattern}s from our list of candidates. The "best" are
    *         those that have been detected at least {@link #CENTER_QUORUM} times, and whose module
@@ -641,6 +1100,38 @@ public class FinderPatternFinder {
     };
   }
 
+  /**
+   * The finder patterns that one scan along a row crosses, in the order it meets them.
+   */
+  private static final class RowScan {
+
+    private FinderPattern[] patterns = new FinderPattern[2];
+    // For each pattern, the run that decides how far to skip ahead after it: its center run
+    private int[] skipRuns = new int[2];
+    private int size;
+    // Whether the last pattern runs up to the end of the row; its skip run is then its first run
+    private boolean endsRow;
+    // Whether the row crosses something like part of a finder pattern of an expected size
+    private boolean partial;
+
+    void clear() {
+      size = 0;
+      endsRow = false;
+      partial = false;
+    }
+
+    void add(FinderPattern pattern, int skipRun) {
+      if (size == patterns.length) {
+        patterns = Arrays.copyOf(patterns, 2 * size);
+        skipRuns = Arrays.copyOf(skipRuns, 2 * size);
+      }
+      patterns[size] = pattern;
+      skipRuns[size] = skipRun;
+      size++;
+    }
+
+  }
+
   /**
    * <p>Orders by furthest from average</p>
    */
@@ -46,4 +46,11 @@ public final class FinderPatternInfo {
     return topRight;
   }
 
+  /**
+   * @return true if the patterns, and so the code, are light on dark
+   */
+  public boolean isInverted() {
+    return topLeft.isInverted();
+  }
+
 }
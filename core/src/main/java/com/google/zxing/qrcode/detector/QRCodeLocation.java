@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.zxing.qrcode.detector;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.PerspectiveTransform;
+import com.google.zxing.qrcode.decoder.Version;
+
+/**
+ * <p>Encapsulates where a QR Code is in an image, as far as it can be told without sampling or
+ * decoding it: its finder and alignment patterns, module size, likely version, and the corners
+ * of the code.</p>
+ * @see Detector#locate(java.util.Map)
+ */
+public final class QRCodeLocation {
+
+  private final FinderPatternInfo finderPatternInfo;
+  private final AlignmentPattern alignmentPattern;
+  private final float moduleSize;
+  private final Version provisionalVersion;
+  private final PerspectiveTransform transform;
+  private final ResultPoint[] corners;
+
+  QRCodeLocation(FinderPatternInfo finderPatternInfo,
+                 AlignmentPattern alignmentPattern,
+                 float moduleSize,
+                 Version provisionalVersion,
+                 PerspectiveTransform transform) {
+    this.finderPatternInfo = finderPatternInfo;
+    this.alignmentPattern = alignmentPattern;
+    this.moduleSize = moduleSize;
+    this.provisionalVersion = provisionalVersion;
+    this.transform = transform;
+    // The outer corners of the code, clockwise from the top left, in module coordinates
+    int dimension = provisionalVersion.getDimensionForVersion();
+    float[] points = {0.0f, 0.0f, dimension, 0.0f, dimension, dimension, 0.0f, dimension};
+    transform.transformPoints(points);
+    this.corners = new ResultPoint[] {
+        new ResultPoint(points[0], points[1]),
+        new ResultPoint(points[2], points[3]),
+        new ResultPoint(points[4], points[5]),
+        new ResultPoint(points[6], points[7])};
+  }
+
+  public FinderPatternInfo getFinderPatternInfo() {
+    return finderPatternInfo;
+  }
+
+  /**
+   * @return the alignment pattern nearest the bottom right corner, or null if the code is too
+   *         small to have one, or it was not found
+   */
+  public AlignmentPattern getAlignmentPattern() {
+    return alignmentPattern;
+  }
+
+  /**
+   * @return estimated size of a module, in pixels
+   */
+  public float getModuleSize() {
+    return moduleSize;
+  }
+
+  /**
+   * @return version that the distance between the finder patterns suggests. The version
+   *         information in the code itself, which is only read when decoding, may disagree.
+   */
+  public Version getProvisionalVersion() {
+    return provisionalVersion;
+  }
+
+  /**
+   * @return the four outer corners of the code: top left, top right, bottom right and bottom
+   *         left, as they are in the code, which may be rotated in the image
+   */
+  public ResultPoint[] getCorners() {
+    return corners;
+  }
+
+  /**
+   * @return finder patterns and alignment pattern, ordered as in a {@link
+   *         com.google.zxing.common.DetectorResult}
+   */
+  public ResultPoint[] getPoints() {
+    if (alignmentPattern == null) {
+      return new ResultPoint[] {finderPatternInfo.getBottomLeft(), finderPatternInfo.getTopLeft(),
+          finderPatternInfo.getTopRight()};
+    }
+    return new ResultPoint[] {finderPatternInfo.getBottomLeft(), finderPatternInfo.getTopLeft(),
+        finderPatternInfo.getTopRight(), alignmentPattern};
+  }
+
+  PerspectiveTransform getTransform() {
+    return transform;
+  }
+
+}
@@ -1,7 +1,9 @@
 package com.google.zxing.web;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.core.client.JavaScriptObject;
@@ -12,10 +14,13 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.zxing.Binarizer;
 import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
 import com.google.zxing.Reader;
 import com.google.zxing.Result;
+import com.google.zxing.common.BitPool;
 import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.detector.DetectionCache;
 
 public class ScannerWidget extends FlowPanel
 {
@@ -30,6 +35,11 @@ public class ScannerWidget extends FlowPanel
     private AsyncCallback<Result> callback;
     private Timer scanTimer;
     private int snapImageMaxSize = -1;
+    private boolean lazyBinarization;
+    private BitPool bitPool = new BitPool();
+    private DetectionCache detectionCache;
+    private boolean singlePassInverted;
+    private Map<DecodeHintType, Object> decodeHints = createDecodeHints(bitPool, detectionCache, singlePassInverted);
     private boolean active = true;
     private JavaScriptObject videoStream;
     private JavaScriptObject videoStreamProvider;
@@ -91,7 +101,8 @@ public class ScannerWidget extends FlowPanel
             canvas.getContext2d().drawImage(video.getVideoElement(), 0, 0, w, h);
 
             CanvasLuminanceSource lsource = new CanvasLuminanceSource(canvas, inverse);
-            Binarizer binarizer = new HybridBinarizer(lsource);
+            Binarizer binarizer = new HybridBinarizer(lsource, lazyBinarization);
+            binarizer.setBitPool(bitPool);
             BinaryBitmap snapImage = new BinaryBitmap(binarizer);
             return snapImage;
         }
@@ -127,7 +138,7 @@ public class ScannerWidget extends FlowPanel
 
         try
         {
-            if(!tryDecode(false))
+            if(!tryDecode(false) && !singlePassInverted)
             {
                 tryDecode(true);
             }
@@ -143,24 +154,51 @@ public class ScannerWidget extends FlowPanel
         BinaryBitmap bitmap = createSnapImage(inverse);
         if(bitmap != null)
         {
-            for(Reader reader : readers)
+            try
             {
-                try
+                for(Reader reader : readers)
                 {
-                    reader.reset();
-                    Result result = reader.decode(bitmap);
-                    onSuccess(result);
-                    return true;
-                }
-                catch(Exception e)
-                {
-                    onError(e);
+                    try
+                    {
+                        reader.reset();
+                        Result result = reader.decode(bitmap, decodeHints);
+                        onSuccess(result);
+                        return true;
+                    }
+                    catch(Exception e)
+                    {
+                        onError(e);
+                    }
                 }
             }
+            finally
+            {
+                // The next snapshot is the same size, so its matrices can reuse this one's
+                bitmap.release();
+            }
         }
         
         return false;
     }
+
+    private static Map<DecodeHintType, Object> createDecodeHints(BitPool bitPool, DetectionCache detectionCache,
+            boolean alsoInverted)
+    {
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        if(bitPool != null)
+        {
+            hints.put(DecodeHintType.BIT_POOL, bitPool);
+        }
+        if(detectionCache != null)
+        {
+            hints.put(DecodeHintType.DETECTION_CACHE, detectionCache);
+        }
+        if(alsoInverted)
+        {
+            hints.put(DecodeHintType.ALSO_INVERTED, Boolean.TRUE);
+        }
+        return hints;
+    }
     
     private void onSuccess(Result result)
     {
@@ -285,6 +323,68 @@ else
         this.snapImageMaxSize = snapImageMaxSize;
     }
 
+    public boolean isLazyBinarization()
+    {
+        return lazyBinarization;
+    }
+
+    /**
+     * @param lazyBinarization if true, snapshots are thresholded tile by tile as the detector
+     *            reads them, instead of all at once before detection starts
+     */
+    public void setLazyBinarization(boolean lazyBinarization)
+    {
+        this.lazyBinarization = lazyBinarization;
+    }
+
+    public BitPool getBitPool()
+    {
+        return bitPool;
+    }
+
+    /**
+     * @param bitPool pool that snapshot matrices are recycled through, or null to allocate them
+     *            afresh for every snapshot. Pass a tracking {@link BitPool} to watch hit rates
+     *            and leaks.
+     */
+    public void setBitPool(BitPool bitPool)
+    {
+        this.bitPool = bitPool;
+        this.decodeHints = createDecodeHints(bitPool, detectionCache, singlePassInverted);
+    }
+
+    public DetectionCache getDetectionCache()
+    {
+        return detectionCache;
+    }
+
+    /**
+     * @param detectionCache cache that lets a code held still in front of the camera be sampled
+     *            without detecting it again in every snapshot, or null to detect every snapshot
+     *            from scratch. Its hit rate shows how often detection was skipped.
+     */
+    public void setDetectionCache(DetectionCache detectionCache)
+    {
+        this.detectionCache = detectionCache;
+        this.decodeHints = createDecodeHints(bitPool, detectionCache, singlePassInverted);
+    }
+
+    public boolean isSinglePassInverted()
+    {
+        return singlePassInverted;
+    }
+
+    /**
+     * @param singlePassInverted if true, light-on-dark codes are looked for in the same pass over
+     *            a snapshot as dark-on-light ones, instead of in a second pass over an inverted
+     *            copy of it when the first finds nothing
+     */
+    public void setSinglePassInverted(boolean singlePassInverted)
+    {
+        this.singlePassInverted = singlePassInverted;
+        this.decodeHints = createDecodeHints(bitPool, detectionCache, singlePassInverted);
+    }
+
     @Override
     protected void onAttach()
     {